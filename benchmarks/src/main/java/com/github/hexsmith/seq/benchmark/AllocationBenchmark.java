@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.range.impl.db.DbDialect;
+import com.github.hexsmith.seq.range.impl.db.DbSequenceRange;
+import com.github.hexsmith.seq.sequence.impl.DefaultRangeSequence;
+import com.github.hexsmith.seq.sequence.impl.RangeJournal;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成序列号热点路径上的内存分配，需要配合GC profiler运行：
+ * <pre>
+ * java -cp target/benchmarks.jar com.github.hexsmith.seq.benchmark.AllocationBenchmark
+ * </pre>
+ * main方法带上 -prof gc 运行全部组合，任意一组的 gc.alloc.rate.norm 超过MAX_BYTES_PER_OP时以异常退出。
+ * 区间对象每个区间分配一次，步长取1000000时分摊到每个序列号远小于1字节。
+ * <br>
+ * db模式通过嵌入式H2(DbDialect.H2)走DbSequenceRange的真实切换路径，JDBC驱动每次切换内部的分配同样按步长分摊；
+ * 单次切换的分配量用 DbSequenceRangeBenchmark.nextRange 加 -prof gc 观察，不在这里设门槛
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-12 10:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+    /**
+     * 每个序列号允许的平均分配字节数
+     */
+    private static final double MAX_BYTES_PER_OP = 1.0;
+
+    /**
+     * 区间步长
+     */
+    @Param({"1000000"})
+    public int step;
+
+    /**
+     * plain：直接在区间上递增；subBlock：线程私有子区间；journal：开启本地区间日志；db：H2上的DB区间管理器
+     */
+    @Param({"plain", "subBlock", "journal", "db"})
+    public String mode;
+
+    private DefaultRangeSequence sequence;
+
+    private File directory;
+
+    private JdbcConnectionPool dataSource;
+
+    private DbSequenceRange rangeManager;
+
+    private final long[] batch = new long[16];
+
+    @Setup
+    public void setUp() throws IOException {
+        sequence = new DefaultRangeSequence();
+        sequence.setRangeName("benchmark");
+        if ("db".equals(mode)) {
+            dataSource = JdbcConnectionPool.create(
+                "jdbc:h2:mem:allocation_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+            rangeManager = new DbSequenceRange();
+            rangeManager.setDataSource(dataSource);
+            rangeManager.setRangeStep(step);
+            rangeManager.setDialect(DbDialect.H2);
+            rangeManager.init();
+            sequence.setSeqRangeMgr(rangeManager);
+        } else {
+            sequence.setSeqRangeMgr(new StubSequenceRangeManager(step, 0));
+        }
+        if ("subBlock".equals(mode)) {
+            sequence.setSubBlockSize(64);
+        } else if ("journal".equals(mode)) {
+            directory = Files.createTempDirectory("sequence-allocation").toFile();
+            sequence.setJournal(new RangeJournal(new File(directory, "benchmark.journal"), 1000, false));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        sequence.close();
+        if (null != dataSource) {
+            rangeManager.close();
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+            dataSource.dispose();
+        }
+        if (null != directory) {
+            File[] files = directory.listFiles();
+            if (null != files) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    @Benchmark
+    public long nextValue() {
+        return sequence.nextValue();
+    }
+
+    @Benchmark
+    public long[] fill() {
+        sequence.fill(batch, 0, batch.length);
+        return batch;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(AllocationBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class).build();
+        StringBuilder failures = new StringBuilder();
+        for (RunResult runResult : new Runner(options).run()) {
+            for (Result<?> result : runResult.getSecondaryResults().values()) {
+                // 不同JMH版本的结果名前缀不同
+                if (result.getLabel().endsWith("gc.alloc.rate.norm") && result.getScore() > MAX_BYTES_PER_OP) {
+                    failures.append(runResult.getParams().getBenchmark()).append(' ')
+                        .append(runResult.getParams().getParam("mode")).append(": ")
+                        .append(result.getScore()).append(" B/op\n");
+                }
+            }
+        }
+        if (failures.length() > 0) {
+            throw new IllegalStateException("allocation on hot path exceeds " + MAX_BYTES_PER_OP + " B/op:\n" + failures);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 改为填充布局之前的SequenceRange：当前值是一个单独分配的AtomicLong，区间用完后仍然每次递增，
+ * 保留作为SequenceRange的性能对照组
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-11 14:00
+ */
+public class AtomicLongSequenceRange {
+
+    private final long min;
+
+    private final long max;
+
+    private final AtomicLong value;
+
+    private volatile boolean rangeOver = false;
+
+    public AtomicLongSequenceRange(long min, long max) {
+        this.min = min;
+        this.max = max;
+        this.value = new AtomicLong(min);
+    }
+
+    public long getAndIncrement() {
+        long currentValue = value.getAndIncrement();
+        if (currentValue > max) {
+            rangeOver = true;
+            return -1;
+        }
+
+        return currentValue;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public boolean isRangeOver() {
+        return rangeOver;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 性能测试入口，在JMH命令行参数的基础上支持用逗号分隔的线程数列表，按线程数逐个运行：
+ * <pre>
+ * java -jar target/benchmarks.jar RangeHandoffBenchmark -t 1,2,4,8,16,32,64
+ * </pre>
+ * 没有指定 -rf/-rff 时结果以JSON格式写入 target/jmh-result.json，按线程数逐个运行时文件名带上线程数，
+ * 例如 target/jmh-result-t8.json。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-14 10:40
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * 默认的结果文件(不含扩展名)
+     */
+    private static final String DEFAULT_RESULT_FILE = "target/jmh-result";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        List<String> jmhArgs = new ArrayList<>();
+        int[] threads = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("-t".equals(args[i]) && i + 1 < args.length && args[i + 1].indexOf(',') > 0) {
+                threads = parseThreads(args[++i]);
+            } else {
+                jmhArgs.add(args[i]);
+            }
+        }
+        CommandLineOptions cmdOptions = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+        boolean defaultResult = !cmdOptions.getResultFormat().hasValue() && !cmdOptions.getResult().hasValue();
+        if (null == threads) {
+            ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions);
+            if (defaultResult) {
+                builder.resultFormat(ResultFormatType.JSON).result(DEFAULT_RESULT_FILE + ".json");
+            }
+            new Runner(builder.build()).run();
+            return;
+        }
+        for (int thread : threads) {
+            ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmdOptions).threads(thread);
+            if (defaultResult) {
+                builder.resultFormat(ResultFormatType.JSON).result(DEFAULT_RESULT_FILE + "-t" + thread + ".json");
+            }
+            new Runner(builder.build()).run();
+        }
+    }
+
+    private static int[] parseThreads(String value) {
+        String[] parts = value.split(",");
+        int[] threads = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            threads[i] = Integer.parseInt(parts[i].trim());
+        }
+        return threads;
+    }
+}
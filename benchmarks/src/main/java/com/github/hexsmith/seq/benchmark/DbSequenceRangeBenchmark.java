@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.DbSequenceBuilder;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.impl.db.DbAllocationMode;
+import com.github.hexsmith.seq.range.impl.db.DbDialect;
+import com.github.hexsmith.seq.range.impl.db.DbSequenceRange;
+import com.github.hexsmith.seq.sequence.Sequence;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于嵌入式H2(DbDialect.H2)的DB区间管理器：nextRange为一次区间分配的代价，nextValue为端到端的序列号生成
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-25 11:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DbSequenceRangeBenchmark {
+
+    private static final String RANGE_NAME = "benchmark";
+
+    /**
+     * 区间步长
+     */
+    @Param({"1000"})
+    public int step;
+
+    /**
+     * 区间分配方式
+     */
+    @Param({"OPTIMISTIC", "ATOMIC_UPDATE", "SELECT_FOR_UPDATE"})
+    public DbAllocationMode allocationMode;
+
+    /**
+     * 是否使用专用连接和缓存的PreparedStatement
+     */
+    @Param({"false", "true"})
+    public boolean dedicated;
+
+    private JdbcConnectionPool dataSource;
+
+    private DbSequenceRange rangeManager;
+
+    private Sequence sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        // 每组参数使用一个新的内存库，-f 0时多组参数在同一个JVM中运行
+        dataSource = JdbcConnectionPool.create(
+            "jdbc:h2:mem:benchmark_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setMaxConnections(128);
+        rangeManager = new DbSequenceRange();
+        rangeManager.setDataSource(dataSource);
+        rangeManager.setRangeStep(step);
+        rangeManager.setAllocationMode(allocationMode);
+        rangeManager.setDialect(DbDialect.H2);
+        if (dedicated) {
+            rangeManager.setDedicatedNames(Collections.singleton(RANGE_NAME));
+        }
+        rangeManager.init();
+        sequence = DbSequenceBuilder.create().dataSource(dataSource).tableName("range").step(step)
+            .allocationMode(allocationMode).dialect(DbDialect.H2).bizName(RANGE_NAME + "_seq").build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        rangeManager.close();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        dataSource.dispose();
+    }
+
+    @Benchmark
+    public SequenceRange nextRange() {
+        return rangeManager.nextRange(RANGE_NAME);
+    }
+
+    @Benchmark
+    public long nextValue() {
+        return sequence.nextValue();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.FileSequenceBuilder;
+import com.github.hexsmith.seq.SequenceRegistry;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.impl.file.FileDurability;
+import com.github.hexsmith.seq.range.impl.file.FileSequenceRange;
+import com.github.hexsmith.seq.sequence.Sequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于内存映射文件的区间管理器，方法和参数与DbSequenceRangeBenchmark对应，可以一起运行对比：
+ * <pre>
+ * java -jar target/benchmarks.jar "(File|Db)SequenceRangeBenchmark"
+ * </pre>
+ * FORCE_PER_RANGE下nextRange主要是一次fsync的代价，PERIODIC下只是一次文件区域锁和内存写
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-06 15:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileSequenceRangeBenchmark {
+
+    private static final String RANGE_NAME = "benchmark";
+
+    /**
+     * 区间步长
+     */
+    @Param({"1000"})
+    public int step;
+
+    /**
+     * 持久化方式
+     */
+    @Param({"FORCE_PER_RANGE", "PERIODIC"})
+    public FileDurability durability;
+
+    private File directory;
+
+    private FileSequenceRange rangeManager;
+
+    private FileSequenceRange registryRangeManager;
+
+    private Sequence sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // 每组参数使用新的文件，-f 0时多组参数在同一个JVM中运行
+        directory = Files.createTempDirectory("sequence-benchmark").toFile();
+        rangeManager = new FileSequenceRange();
+        rangeManager.setPath(new File(directory, "range.seq").getPath());
+        rangeManager.setStep(step);
+        rangeManager.setDurability(durability);
+        rangeManager.init();
+        SequenceRegistry registry = FileSequenceBuilder.create().path(new File(directory, "sequence.seq").getPath())
+            .step(step).durability(durability).buildRegistry();
+        registryRangeManager = (FileSequenceRange) registry.getSequenceRangeManager();
+        sequence = registry.getSequence(RANGE_NAME + "_seq");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        rangeManager.close();
+        registryRangeManager.close();
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public SequenceRange nextRange() {
+        return rangeManager.nextRange(RANGE_NAME);
+    }
+
+    @Benchmark
+    public long nextValue() {
+        return sequence.nextValue();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的Redis替身，只实现RESP协议和区间管理器用到的少量命令(PING/AUTH/SELECT/INCRBY/GET/DEL/QUIT)，
+ * 用于在没有Redis服务的环境中测量客户端和网络栈的开销
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-25 14:00
+ */
+public class LocalRedisServer implements Closeable {
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    private final ServerSocket serverSocket;
+
+    private volatile boolean running = true;
+
+    public LocalRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "local-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread handler = new Thread(() -> serve(socket), "local-redis-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (running) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket client = socket;
+             InputStream in = new BufferedInputStream(client.getInputStream());
+             OutputStream out = new BufferedOutputStream(client.getOutputStream())) {
+            for (; ; ) {
+                String[] command = readCommand(in);
+                if (null == command) {
+                    return;
+                }
+                boolean quit = execute(command, out);
+                // 流水线中的命令处理完之后再统一刷出
+                if (in.available() == 0 || quit) {
+                    out.flush();
+                }
+                if (quit) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // 客户端断开
+        }
+    }
+
+    private boolean execute(String[] command, OutputStream out) throws IOException {
+        String name = command[0].toUpperCase(Locale.ROOT);
+        switch (name) {
+            case "PING":
+                writeLine(out, "+PONG");
+                return false;
+            case "AUTH":
+            case "SELECT":
+                writeLine(out, "+OK");
+                return false;
+            case "QUIT":
+                writeLine(out, "+OK");
+                return true;
+            case "INCRBY":
+                writeLine(out, ":" + counter(command[1]).addAndGet(Long.parseLong(command[2])));
+                return false;
+            case "INCR":
+                writeLine(out, ":" + counter(command[1]).incrementAndGet());
+                return false;
+            case "GET":
+                AtomicLong value = counters.get(command[1]);
+                if (null == value) {
+                    writeLine(out, "$-1");
+                } else {
+                    String text = String.valueOf(value.get());
+                    writeLine(out, "$" + text.length());
+                    writeLine(out, text);
+                }
+                return false;
+            case "DEL":
+                writeLine(out, ":" + (null == counters.remove(command[1]) ? 0 : 1));
+                return false;
+            default:
+                writeLine(out, "-ERR unknown command '" + command[0] + "'");
+                return false;
+        }
+    }
+
+    private AtomicLong counter(String key) {
+        return counters.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    private static String[] readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (null == header) {
+            return null;
+        }
+        if (header.charAt(0) != '*') {
+            // inline命令
+            return header.trim().split("\\s+");
+        }
+        int count = Integer.parseInt(header.substring(1));
+        String[] args = new String[count];
+        for (int i = 0; i < count; i++) {
+            String lengthLine = readLine(in);
+            if (null == lengthLine) {
+                throw new EOFException();
+            }
+            int length = Integer.parseInt(lengthLine.substring(1));
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(bytes, read, length - read);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                read += n;
+            }
+            readLine(in);
+            args[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (; ; ) {
+            int b = in.read();
+            if (b < 0) {
+                return line.length() == 0 ? null : line.toString();
+            }
+            if (b == '\r') {
+                in.read();
+                return line.toString();
+            }
+            line.append((char) b);
+        }
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\r');
+        out.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.sequence.RangeSequence;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 基于ReentrantLock切换区间的实现，保留作为DefaultRangeSequence的性能对照组
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-14 10:20
+ */
+public class LockingRangeSequence implements RangeSequence {
+
+    private final Lock lock = new ReentrantLock();
+
+    private SequenceRangeManager sequenceRangeManager;
+
+    private volatile SequenceRange currentRange;
+
+    private String rangeName;
+
+    @Override
+    public void setSeqRangeMgr(SequenceRangeManager seqRangeMgr) {
+        this.sequenceRangeManager = seqRangeMgr;
+    }
+
+    @Override
+    public void setRangeName(String rangeName) {
+        this.rangeName = rangeName;
+    }
+
+    @Override
+    public long nextValue() throws SequenceException {
+        if (null == currentRange) {
+            lock.lock();
+            try {
+                if (null == currentRange) {
+                    currentRange = sequenceRangeManager.nextRange(rangeName);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        long value = currentRange.getAndIncrement();
+        if (value == -1) {
+            lock.lock();
+            try {
+                for (; ; ) {
+                    if (currentRange.isRangeOver()) {
+                        currentRange = sequenceRangeManager.nextRange(rangeName);
+                    }
+                    value = currentRange.getAndIncrement();
+                    if (value == -1) {
+                        continue;
+                    }
+                    break;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (value < 0) {
+            throw new SequenceException("Sequence value overflow, value = " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.sequence.RangeSequence;
+import com.github.hexsmith.seq.sequence.impl.DefaultRangeSequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区间切换方式对比：无锁CAS切换(DefaultRangeSequence) 与 ReentrantLock切换(LockingRangeSequence)
+ * <br>
+ * 线程数通过BenchmarkRunner的 -t 1,2,4,8,16,32,64 参数逐个运行。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-14 10:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeHandoffBenchmark {
+
+    /**
+     * 区间切换实现
+     */
+    @Param({"lock-free", "lock"})
+    public String handoff;
+
+    /**
+     * 区间步长，步长越小切换越频繁
+     */
+    @Param({"100", "10000"})
+    public int step;
+
+    /**
+     * 模拟获取一次区间的延迟(微秒)
+     */
+    @Param({"0", "200"})
+    public long latencyMicros;
+
+    private RangeSequence sequence;
+
+    @Setup
+    public void setUp() {
+        sequence = "lock".equals(handoff) ? new LockingRangeSequence() : new DefaultRangeSequence();
+        sequence.setRangeName("benchmark");
+        sequence.setSeqRangeMgr(new StubSequenceRangeManager(step, latencyMicros));
+    }
+
+    @Benchmark
+    public long nextValue() {
+        return sequence.nextValue();
+    }
+}
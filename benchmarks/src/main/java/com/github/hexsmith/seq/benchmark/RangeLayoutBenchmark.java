@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.range.SequenceRange;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SequenceRange的内存布局对比：填充后的SequenceRange 与 单独分配AtomicLong的AtomicLongSequenceRange
+ * <ul>
+ * <li>ownRange：每个线程递增自己的区间，所有区间连续分配，未填充时多个区间的计数器落在同一个缓存行上(伪共享)</li>
+ * <li>exhaustedRange：所有线程在一个已经用完的区间上取号，模拟等待区间切换的线程，未填充的实现每次仍然写计数器</li>
+ * </ul>
+ * 线程数通过BenchmarkRunner的 -t 1,2,4,8,16,32,64 参数逐个运行，线程数不超过MAX_THREADS。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-11 14:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeLayoutBenchmark {
+
+    private static final int MAX_THREADS = 256;
+
+    private final SequenceRange[] paddedRanges = new SequenceRange[MAX_THREADS];
+
+    private final AtomicLongSequenceRange[] atomicRanges = new AtomicLongSequenceRange[MAX_THREADS];
+
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    private SequenceRange paddedExhausted;
+
+    private AtomicLongSequenceRange atomicExhausted;
+
+    @Setup
+    public void setUp() {
+        // 连续分配，让相邻区间在堆上尽量靠在一起
+        for (int i = 0; i < MAX_THREADS; i++) {
+            paddedRanges[i] = new SequenceRange(0, Long.MAX_VALUE / 2);
+            atomicRanges[i] = new AtomicLongSequenceRange(0, Long.MAX_VALUE / 2);
+        }
+        paddedExhausted = new SequenceRange(0, -1);
+        atomicExhausted = new AtomicLongSequenceRange(0, -1);
+    }
+
+    /**
+     * 每个线程固定使用的区间下标
+     */
+    @State(Scope.Thread)
+    public static class ThreadSlot {
+
+        private int index;
+
+        @Setup
+        public void setUp(RangeLayoutBenchmark benchmark) {
+            index = benchmark.threadIndex.getAndIncrement() % MAX_THREADS;
+        }
+    }
+
+    @Benchmark
+    public long paddedOwnRange(ThreadSlot slot) {
+        return paddedRanges[slot.index].getAndIncrement();
+    }
+
+    @Benchmark
+    public long atomicOwnRange(ThreadSlot slot) {
+        return atomicRanges[slot.index].getAndIncrement();
+    }
+
+    @Benchmark
+    public long paddedExhaustedRange() {
+        return paddedExhausted.getAndIncrement();
+    }
+
+    @Benchmark
+    public long atomicExhaustedRange() {
+        return atomicExhausted.getAndIncrement();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.sequence.impl.DefaultRangeSequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DefaultRangeSequence的吞吐量和延迟分位数，区间由带固定延迟的进程内桩提供，
+ * 用来观察区间切换延迟对p99/p99.9的影响以及预取的效果。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-25 10:20
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeSequenceBenchmark {
+
+    /**
+     * 区间步长
+     */
+    @Param({"1000"})
+    public int step;
+
+    /**
+     * 模拟获取一次区间的延迟(微秒)
+     */
+    @Param({"0", "1000"})
+    public long latencyMicros;
+
+    /**
+     * 预取阈值，0表示不预取
+     */
+    @Param({"0", "0.2"})
+    public double prefetchThreshold;
+
+    private DefaultRangeSequence sequence;
+
+    @Setup
+    public void setUp() {
+        sequence = new DefaultRangeSequence();
+        sequence.setRangeName("benchmark");
+        sequence.setPrefetchThreshold(prefetchThreshold);
+        sequence.setSeqRangeMgr(new StubSequenceRangeManager(step, latencyMicros));
+    }
+
+    @Benchmark
+    public long nextValue() {
+        return sequence.nextValue();
+    }
+}
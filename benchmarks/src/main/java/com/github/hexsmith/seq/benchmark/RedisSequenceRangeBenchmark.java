@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.RedisSequenceBuilder;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.impl.redis.RedisSequenceRange;
+import com.github.hexsmith.seq.sequence.Sequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis区间管理器，默认连接进程内的LocalRedisServer；
+ * 指定 -Dredis.port=6379 (可选 -Dredis.host) 时连接真实的Redis
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-25 15:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisSequenceRangeBenchmark {
+
+    private static final String RANGE_NAME = "benchmark";
+
+    /**
+     * 区间步长
+     */
+    @Param({"1000"})
+    public int step;
+
+    private LocalRedisServer server;
+
+    private RedisSequenceRange rangeManager;
+
+    private Sequence sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String host = System.getProperty("redis.host", "127.0.0.1");
+        String port = System.getProperty("redis.port");
+        if (null == port) {
+            server = new LocalRedisServer();
+            port = String.valueOf(server.getPort());
+        }
+        rangeManager = new RedisSequenceRange();
+        rangeManager.setIp(host);
+        rangeManager.setPort(Integer.valueOf(port));
+        rangeManager.setStep(step);
+        rangeManager.init();
+        sequence = RedisSequenceBuilder.create().ip(host).port(Integer.parseInt(port)).step(step)
+            .bizName(RANGE_NAME + "_seq").build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        rangeManager.close();
+        if (null != server) {
+            server.close();
+        }
+    }
+
+    @Benchmark
+    public SequenceRange nextRange() {
+        return rangeManager.nextRange(RANGE_NAME);
+    }
+
+    /**
+     * 每个线程使用不同的区间名，同时到达的请求会合并到一次pipeline中
+     *
+     * @param name 线程自己的区间名
+     * @return 区间
+     */
+    @Benchmark
+    public SequenceRange nextRangePerThreadName(ThreadName name) {
+        return rangeManager.nextRange(name.value);
+    }
+
+    @Benchmark
+    public long nextValue() {
+        return sequence.nextValue();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadName {
+
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        private final String value = RANGE_NAME + "_" + COUNTER.incrementAndGet();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.SnowflakeSequenceBuilder;
+import com.github.hexsmith.seq.sequence.Sequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 雪花算法生成器吞吐量，单节点每毫秒最多4096个ID，即上限约4 ops/us；
+ * 用BenchmarkRunner的 -t 1,2,4,8,16,32,64 观察线程数增加时吞吐量是否保持在上限附近。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-15 15:10
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowflakeSequenceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedSequence {
+
+        private Sequence sequence;
+
+        @Setup
+        public void setUp() {
+            sequence = SnowflakeSequenceBuilder.create().dataCenterId(1).workerId(1).build();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        private final long[] values = new long[64];
+    }
+
+    @Benchmark
+    public long nextValue(SharedSequence shared) {
+        return shared.sequence.nextValue();
+    }
+
+    /**
+     * 每次批量取64个ID，吞吐量按调用次数计，换算ID数需乘以64
+     */
+    @Benchmark
+    public long[] fill64(SharedSequence shared, Batch batch) {
+        shared.sequence.fill(batch.values, 0, batch.values.length);
+        return batch.values;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.impl.db.DbDialect;
+import com.github.hexsmith.seq.range.impl.db.DbSequenceRange;
+import com.github.hexsmith.seq.range.impl.striped.StripedSequenceRange;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片区间管理器：每个线程模拟一个节点，按线程序号选择优先分片，所有节点争抢同一个逻辑区间名。
+ * stripes=1时所有节点都在同一行上做乐观CAS，stripes>1时节点分散到不同的行上。
+ * 需要多线程运行才有意义，例如 -t 8
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-02 15:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StripedSequenceRangeBenchmark {
+
+    private static final String RANGE_NAME = "benchmark";
+
+    /**
+     * 分片个数
+     */
+    @Param({"1", "4"})
+    public int stripes;
+
+    private JdbcConnectionPool dataSource;
+
+    private DbSequenceRange dbRangeManager;
+
+    private final AtomicInteger nodeCounter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = JdbcConnectionPool.create(
+            "jdbc:h2:mem:striped_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        dataSource.setMaxConnections(128);
+        dbRangeManager = new DbSequenceRange();
+        dbRangeManager.setDataSource(dataSource);
+        dbRangeManager.setDialect(DbDialect.H2);
+        dbRangeManager.init();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        dataSource.dispose();
+    }
+
+    @Benchmark
+    public SequenceRange nextRange(Node node) {
+        return node.rangeManager.nextRange(RANGE_NAME);
+    }
+
+    /**
+     * 一个节点，持有自己的分片区间管理器
+     */
+    @State(Scope.Thread)
+    public static class Node {
+
+        private StripedSequenceRange rangeManager;
+
+        @Setup(Level.Trial)
+        public void setUp(StripedSequenceRangeBenchmark benchmark) {
+            rangeManager = new StripedSequenceRange();
+            rangeManager.setDelegate(benchmark.dbRangeManager);
+            rangeManager.setStripes(benchmark.stripes);
+            rangeManager.setPreferredStripe(benchmark.nodeCounter.getAndIncrement() % benchmark.stripes);
+            rangeManager.init();
+        }
+    }
+}
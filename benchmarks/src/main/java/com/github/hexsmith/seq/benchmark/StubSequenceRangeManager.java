@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 进程内的区间管理器桩，用固定延迟模拟一次DB/Redis往返
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-14 10:10
+ */
+public class StubSequenceRangeManager implements SequenceRangeManager {
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 区间步长
+     */
+    private final int step;
+
+    /**
+     * 每次获取区间的模拟延迟(微秒)
+     */
+    private final long latencyMicros;
+
+    public StubSequenceRangeManager(int step, long latencyMicros) {
+        this.step = step;
+        this.latencyMicros = latencyMicros;
+    }
+
+    @Override
+    public SequenceRange nextRange(String name) throws SequenceException {
+        if (latencyMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        }
+        long max = counters.computeIfAbsent(name, key -> new AtomicLong()).addAndGet(step);
+        return new SequenceRange(max - step + 1, max);
+    }
+
+    @Override
+    public void init() {
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.benchmark;
+
+import com.github.hexsmith.seq.sequence.impl.DefaultRangeSequence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 子区间模式对多核扩展性的影响：subBlockSize为0时所有线程争用区间上同一个计数器，
+ * 大于0时每个线程切出一段后在线程内递增。步长取得很大，让结果只反映计数器争用而不是区间切换。
+ * <br>
+ * 线程数通过BenchmarkRunner的 -t 1,2,4,8,16,32,64 参数逐个运行。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-10 10:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubBlockBenchmark {
+
+    /**
+     * 每个线程一次切出的序列号个数，0表示不切分
+     */
+    @Param({"0", "64", "1024"})
+    public int subBlockSize;
+
+    /**
+     * 区间步长
+     */
+    @Param({"10000000"})
+    public int step;
+
+    private DefaultRangeSequence sequence;
+
+    @Setup
+    public void setUp() {
+        sequence = new DefaultRangeSequence();
+        sequence.setRangeName("benchmark");
+        sequence.setSubBlockSize(subBlockSize);
+        sequence.setSeqRangeMgr(new StubSequenceRangeManager(step, 0));
+    }
+
+    @Benchmark
+    public long nextValue() {
+        return sequence.nextValue();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq;
+
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.range.impl.striped.StripedSequenceRange;
+import com.github.hexsmith.seq.sequence.Sequence;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * 基于区间的序列号生成器构建者的公共部分：业务名称、分片以及注册表级别的选项(预热、预取、子区间、本地日志)，
+ * 子类只负责构建各自的后端区间管理器
+ *
+ * @param <B> 子类构建者类型
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-12 17:00
+ */
+public abstract class AbstractRangeSequenceBuilder<B extends AbstractRangeSequenceBuilder<B>>
+    implements SequenceBuilder {
+
+    /**
+     * 业务名称[必选]
+     */
+    private String bizName;
+    /**
+     * 每个业务名称的分片个数，大于1时一个业务名称对应多个物理行/key/槽，各分片使用互不重叠的值空间，
+     * 序列号不再全局递增[可选，默认：1，不分片]
+     */
+    private int stripes = 1;
+    /**
+     * 构建注册表时一次批量预热的业务名称[可选，默认：无]
+     */
+    private Set<String> warmUpNames = new LinkedHashSet<>();
+    /**
+     * 区间剩余比例低于该值时后台预取下一个区间[可选，默认：0，不预取]
+     */
+    private double prefetchThreshold = 0;
+    /**
+     * 执行预取和异步切换区间的线程池[可选，默认：共享的守护线程池]
+     */
+    private Executor prefetchExecutor;
+    /**
+     * 每个线程一次从区间中切出的序列号个数，开启后线程间不再争用同一个计数器，
+     * 但节点内的序列号不再严格递增[可选，默认：0，不切分]
+     */
+    private int subBlockSize = 0;
+    /**
+     * 本地区间日志目录，每个业务名称一个文件，重启后继续使用剩余区间[可选，默认：无，不记录]
+     */
+    private String journalDirectory;
+    /**
+     * 日志每次提升高水位时预留的序列号个数，进程崩溃后最多丢弃这么多个序列号[可选，默认：1000]
+     */
+    private long journalReserve = 1000;
+    /**
+     * 日志提升高水位时是否刷盘，开启后操作系统崩溃也不会重复发放[可选，默认：false]
+     */
+    private boolean journalForce = false;
+
+    /**
+     * 构建一个序列号生成器
+     *
+     * @return 序列号生成器
+     */
+    @Override
+    public Sequence build() {
+        return buildRegistry().getSequence(this.bizName);
+    }
+
+    /**
+     * 构建一个序列号生成器注册表，注册表中的所有业务名称共享同一个区间管理器，bizName不需要设置
+     *
+     * @return 序列号生成器注册表
+     */
+    public SequenceRegistry buildRegistry() {
+        SequenceRangeManager rangeManager = buildRangeManager();
+        rangeManager.init();
+        //构建序列号生成器注册表
+        SequenceRegistry registry = new SequenceRegistry(rangeManager);
+        registry.setPrefetchThreshold(this.prefetchThreshold);
+        registry.setPrefetchExecutor(this.prefetchExecutor);
+        registry.setSubBlockSize(this.subBlockSize);
+        if (null != this.journalDirectory) {
+            registry.setJournalDirectory(new File(this.journalDirectory));
+            registry.setJournalReserve(this.journalReserve);
+            registry.setJournalForce(this.journalForce);
+        }
+        if (!this.warmUpNames.isEmpty()) {
+            registry.warmUp(this.warmUpNames);
+        }
+        return registry;
+    }
+
+    /**
+     * 构建一个配置好但还没有初始化的区间管理器，用于组合成FailoverSequenceRange等复合区间管理器
+     *
+     * @return 区间管理器
+     */
+    public SequenceRangeManager buildRangeManager() {
+        SequenceRangeManager rangeManager = buildBackendRangeManager();
+        if (this.stripes > 1) {
+            StripedSequenceRange stripedRangeMgr = new StripedSequenceRange();
+            stripedRangeMgr.setDelegate(rangeManager);
+            stripedRangeMgr.setStripes(this.stripes);
+            rangeManager = stripedRangeMgr;
+        }
+        return rangeManager;
+    }
+
+    /**
+     * 构建后端区间管理器，不包含分片，不需要初始化
+     *
+     * @return 区间管理器
+     */
+    protected abstract SequenceRangeManager buildBackendRangeManager();
+
+    @SuppressWarnings("unchecked")
+    protected B self() {
+        return (B) this;
+    }
+
+    public B bizName(String bizName) {
+        this.bizName = bizName;
+        return self();
+    }
+
+    public B stripes(int stripes) {
+        this.stripes = stripes;
+        return self();
+    }
+
+    public B warmUp(String... bizNames) {
+        this.warmUpNames.addAll(Arrays.asList(bizNames));
+        return self();
+    }
+
+    public B prefetchThreshold(double prefetchThreshold) {
+        this.prefetchThreshold = prefetchThreshold;
+        return self();
+    }
+
+    public B prefetchExecutor(Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+        return self();
+    }
+
+    public B subBlockSize(int subBlockSize) {
+        this.subBlockSize = subBlockSize;
+        return self();
+    }
+
+    public B journalDirectory(String journalDirectory) {
+        this.journalDirectory = journalDirectory;
+        return self();
+    }
+
+    public B journalReserve(long journalReserve) {
+        this.journalReserve = journalReserve;
+        return self();
+    }
+
+    public B journalForce(boolean journalForce) {
+        this.journalForce = journalForce;
+        return self();
+    }
+
+}
@@ -15,9 +15,16 @@
  */
 package com.github.hexsmith.seq;
 
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.range.impl.db.DbAllocationMode;
+import com.github.hexsmith.seq.range.impl.db.DbDialect;
 import com.github.hexsmith.seq.range.impl.db.DbSequenceRange;
-import com.github.hexsmith.seq.sequence.Sequence;
-import com.github.hexsmith.seq.sequence.impl.DefaultRangeSequence;
+import com.github.hexsmith.seq.range.retry.RetryPolicy;
+import com.github.hexsmith.seq.range.step.StepPolicy;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -28,17 +35,13 @@ import javax.sql.DataSource;
  * @version V1.0
  * @since 2018-06-05 15:20
  */
-public class DbSequenceBuilder implements SequenceBuilder {
+public class DbSequenceBuilder extends AbstractRangeSequenceBuilder<DbSequenceBuilder> {
 
     /**
      * 数据库数据源[必选]
      */
     private DataSource dataSource;
 
-    /**
-     * 业务名称[必选]
-     */
-    private String bizName;
     /**
      * 存放序列号步长的表[可选：默认：sequence]
      */
@@ -47,30 +50,55 @@ public class DbSequenceBuilder implements SequenceBuilder {
      * 并发是数据使用了乐观策略，这个是失败重试的次数[可选：默认：100]
      */
     private int    retryTimes = 100;
+    /**
+     * 乐观更新冲突时的重试策略，例如DecorrelatedJitterRetryPolicy，设置后retryTimes不再生效[可选，默认：立即重试retryTimes次]
+     */
+    private RetryPolicy retryPolicy;
+    /**
+     * 同一个区间名在本地同一时刻只有一个线程访问DB[可选，默认：true]
+     */
+    private boolean coalesce = true;
     /**
      * 获取range步长[可选：默认：1000]
      */
     private int    step       = 1000;
+    /**
+     * 步长策略，例如根据消耗速度调整步长的AdaptiveStepPolicy[可选，默认：固定使用step]
+     */
+    private StepPolicy stepPolicy;
+    /**
+     * 区间分配方式，ATOMIC_UPDATE和SELECT_FOR_UPDATE不会因并发而重试[可选，默认：OPTIMISTIC]
+     */
+    private DbAllocationMode allocationMode = DbAllocationMode.OPTIMISTIC;
+    /**
+     * 数据库方言[可选，默认：MYSQL]
+     */
+    private DbDialect dialect = DbDialect.MYSQL;
+    /**
+     * 使用专用连接和缓存PreparedStatement的业务名称，适合取区间频率很高的业务[可选，默认：无]
+     */
+    private Set<String> dedicatedNames = new HashSet<>();
 
     /**
-     * 构建一个序列号生成器
+     * 构建后端区间管理器，不包含分片，不需要初始化
      *
-     * @return 序列号生成器
+     * @return 区间管理器
      */
     @Override
-    public Sequence build() {
+    protected SequenceRangeManager buildBackendRangeManager() {
         //利用DB获取区间管理器
         DbSequenceRange dbSeqRangeMgr = new DbSequenceRange();
         dbSeqRangeMgr.setDataSource(this.dataSource);
         dbSeqRangeMgr.setTableName(this.tableName);
         dbSeqRangeMgr.setRetryTimes(this.retryTimes);
+        dbSeqRangeMgr.setRetryPolicy(this.retryPolicy);
+        dbSeqRangeMgr.setCoalesce(this.coalesce);
         dbSeqRangeMgr.setRangeStep(this.step);
-        dbSeqRangeMgr.init();
-        //构建序列号生成器
-        DefaultRangeSequence sequence = new DefaultRangeSequence();
-        sequence.setRangeName(this.bizName);
-        sequence.setSeqRangeMgr(dbSeqRangeMgr);
-        return sequence;
+        dbSeqRangeMgr.setStepPolicy(this.stepPolicy);
+        dbSeqRangeMgr.setAllocationMode(this.allocationMode);
+        dbSeqRangeMgr.setDialect(this.dialect);
+        dbSeqRangeMgr.setDedicatedNames(this.dedicatedNames);
+        return dbSeqRangeMgr;
     }
 
     public static DbSequenceBuilder create() {
@@ -92,13 +120,38 @@ public class DbSequenceBuilder implements SequenceBuilder {
         return this;
     }
 
+    public DbSequenceBuilder retryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public DbSequenceBuilder coalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+        return this;
+    }
+
     public DbSequenceBuilder step(int step) {
         this.step = step;
         return this;
     }
 
-    public DbSequenceBuilder bizName(String bizName) {
-        this.bizName = bizName;
+    public DbSequenceBuilder allocationMode(DbAllocationMode allocationMode) {
+        this.allocationMode = allocationMode;
+        return this;
+    }
+
+    public DbSequenceBuilder dialect(DbDialect dialect) {
+        this.dialect = dialect;
+        return this;
+    }
+
+    public DbSequenceBuilder dedicatedNames(String... dedicatedNames) {
+        this.dedicatedNames.addAll(Arrays.asList(dedicatedNames));
+        return this;
+    }
+
+    public DbSequenceBuilder stepPolicy(StepPolicy stepPolicy) {
+        this.stepPolicy = stepPolicy;
         return this;
     }
 
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq;
+
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.range.impl.file.FileDurability;
+import com.github.hexsmith.seq.range.impl.file.FileSequenceRange;
+import com.github.hexsmith.seq.range.step.StepPolicy;
+
+/**
+ * 基于本地内存映射文件取步长，序列号生成器构建者
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-06 14:00
+ */
+public class FileSequenceBuilder extends AbstractRangeSequenceBuilder<FileSequenceBuilder> {
+
+    /**
+     * 存放区间的文件路径，同一台机器上的多个进程可以共用[必选]
+     */
+    private String path;
+    /**
+     * 获取range步长[可选，默认：1000]
+     */
+    private int step = 1000;
+    /**
+     * 区间不存在时的初始值，真实从stepStart+1开始[可选，默认：0]
+     */
+    private long stepStart = 0;
+    /**
+     * 步长策略，例如根据消耗速度调整步长的AdaptiveStepPolicy[可选，默认：固定使用step]
+     */
+    private StepPolicy stepPolicy;
+    /**
+     * 新建文件时最多支持的区间名个数[可选，默认：1024]
+     */
+    private int capacity = 1024;
+    /**
+     * 持久化方式[可选，默认：FORCE_PER_RANGE，每个区间刷一次盘]
+     */
+    private FileDurability durability = FileDurability.FORCE_PER_RANGE;
+    /**
+     * PERIODIC方式的刷盘间隔(毫秒)[可选，默认：1000]
+     */
+    private long forceIntervalMillis = 1000;
+
+    /**
+     * 构建后端区间管理器，不包含分片，不需要初始化
+     *
+     * @return 区间管理器
+     */
+    @Override
+    protected SequenceRangeManager buildBackendRangeManager() {
+        //利用本地文件获取区间管理器
+        FileSequenceRange fileSeqRangeMgr = new FileSequenceRange();
+        fileSeqRangeMgr.setPath(this.path);
+        fileSeqRangeMgr.setStep(this.step);
+        fileSeqRangeMgr.setStepStart(this.stepStart);
+        fileSeqRangeMgr.setStepPolicy(this.stepPolicy);
+        fileSeqRangeMgr.setCapacity(this.capacity);
+        fileSeqRangeMgr.setDurability(this.durability);
+        fileSeqRangeMgr.setForceIntervalMillis(this.forceIntervalMillis);
+        return fileSeqRangeMgr;
+    }
+
+    public static FileSequenceBuilder create() {
+        return new FileSequenceBuilder();
+    }
+
+    public FileSequenceBuilder path(String path) {
+        this.path = path;
+        return this;
+    }
+
+    public FileSequenceBuilder step(int step) {
+        this.step = step;
+        return this;
+    }
+
+    public FileSequenceBuilder stepStart(long stepStart) {
+        this.stepStart = stepStart;
+        return this;
+    }
+
+    public FileSequenceBuilder stepPolicy(StepPolicy stepPolicy) {
+        this.stepPolicy = stepPolicy;
+        return this;
+    }
+
+    public FileSequenceBuilder capacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    public FileSequenceBuilder durability(FileDurability durability) {
+        this.durability = durability;
+        return this;
+    }
+
+    public FileSequenceBuilder forceIntervalMillis(long forceIntervalMillis) {
+        this.forceIntervalMillis = forceIntervalMillis;
+        return this;
+    }
+
+}
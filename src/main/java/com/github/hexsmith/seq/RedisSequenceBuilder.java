@@ -15,9 +15,11 @@
  */
 package com.github.hexsmith.seq;
 
+import com.github.hexsmith.seq.range.SequenceRangeManager;
 import com.github.hexsmith.seq.range.impl.redis.RedisSequenceRange;
-import com.github.hexsmith.seq.sequence.Sequence;
-import com.github.hexsmith.seq.sequence.impl.DefaultRangeSequence;
+import com.github.hexsmith.seq.range.step.StepPolicy;
+
+import redis.clients.jedis.JedisPool;
 
 /**
  * 基于redis取步长，序列号生成器构建者
@@ -26,7 +28,7 @@ import com.github.hexsmith.seq.sequence.impl.DefaultRangeSequence;
  * @version V1.0
  * @since 2018-06-05 15:28
  */
-public class RedisSequenceBuilder implements SequenceBuilder {
+public class RedisSequenceBuilder extends AbstractRangeSequenceBuilder<RedisSequenceBuilder> {
 
     /**
      * 连接redis的IP[必选]
@@ -37,9 +39,29 @@ public class RedisSequenceBuilder implements SequenceBuilder {
      */
     private int    port;
     /**
-     * 业务名称[必选]
+     * 共享的redis连接池，设置后忽略ip/port/auth[可选]
+     */
+    private JedisPool jedisPool;
+    /**
+     * 连接池最大连接数[可选，默认：8]
+     */
+    private int maxTotal = 8;
+    /**
+     * 连接异常时的最大重试次数[可选，默认：3]
+     */
+    private int maxRetries = 3;
+    /**
+     * 是否使用Lua脚本分配区间，开启后stepStart、maxValue和按区间名配置的步长生效[可选，默认：false]
+     */
+    private boolean useScript = false;
+    /**
+     * 区间不存在时的初始值[可选，默认：0]
+     */
+    private long stepStart = 0;
+    /**
+     * 序列号最大值[可选，默认：2^53-1]
      */
-    private String bizName;
+    private long maxValue = RedisSequenceRange.MAX_SCRIPT_VALUE;
     /**
      * 认证权限，看redis是否配置了需要密码auth[可选]
      */
@@ -48,26 +70,32 @@ public class RedisSequenceBuilder implements SequenceBuilder {
      * 获取range步长[可选，默认：1000]
      */
     private int step = 1000;
+    /**
+     * 步长策略，例如根据消耗速度调整步长的AdaptiveStepPolicy[可选，默认：固定使用step]
+     */
+    private StepPolicy stepPolicy;
 
     /**
-     * 构建一个序列号生成器
+     * 构建后端区间管理器，不包含分片，不需要初始化
      *
-     * @return 序列号生成器
+     * @return 区间管理器
      */
     @Override
-    public Sequence build() {
+    protected SequenceRangeManager buildBackendRangeManager() {
         //利用Redis获取区间管理器
         RedisSequenceRange redisSeqRangeMgr = new RedisSequenceRange();
         redisSeqRangeMgr.setIp(this.ip);
         redisSeqRangeMgr.setPort(this.port);
         redisSeqRangeMgr.setAuth(this.auth);
         redisSeqRangeMgr.setStep(this.step);
-        redisSeqRangeMgr.init();
-        //构建序列号生成器
-        DefaultRangeSequence sequence = new DefaultRangeSequence();
-        sequence.setRangeName(this.bizName);
-        sequence.setSeqRangeMgr(redisSeqRangeMgr);
-        return sequence;
+        redisSeqRangeMgr.setStepPolicy(this.stepPolicy);
+        redisSeqRangeMgr.setJedisPool(this.jedisPool);
+        redisSeqRangeMgr.setMaxTotal(this.maxTotal);
+        redisSeqRangeMgr.setMaxRetries(this.maxRetries);
+        redisSeqRangeMgr.setUseScript(this.useScript);
+        redisSeqRangeMgr.setStepStart(this.stepStart);
+        redisSeqRangeMgr.setMaxValue(this.maxValue);
+        return redisSeqRangeMgr;
     }
 
     public static RedisSequenceBuilder create() {
@@ -84,6 +112,36 @@ public class RedisSequenceBuilder implements SequenceBuilder {
         return this;
     }
 
+    public RedisSequenceBuilder jedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+        return this;
+    }
+
+    public RedisSequenceBuilder maxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+        return this;
+    }
+
+    public RedisSequenceBuilder maxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public RedisSequenceBuilder useScript(boolean useScript) {
+        this.useScript = useScript;
+        return this;
+    }
+
+    public RedisSequenceBuilder stepStart(long stepStart) {
+        this.stepStart = stepStart;
+        return this;
+    }
+
+    public RedisSequenceBuilder maxValue(long maxValue) {
+        this.maxValue = maxValue;
+        return this;
+    }
+
     public RedisSequenceBuilder auth(String auth) {
         this.auth = auth;
         return this;
@@ -94,8 +152,8 @@ public class RedisSequenceBuilder implements SequenceBuilder {
         return this;
     }
 
-    public RedisSequenceBuilder bizName(String bizName) {
-        this.bizName = bizName;
+    public RedisSequenceBuilder stepPolicy(StepPolicy stepPolicy) {
+        this.stepPolicy = stepPolicy;
         return this;
     }
 
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.sequence.Sequence;
+import com.github.hexsmith.seq.sequence.impl.DefaultRangeSequence;
+import com.github.hexsmith.seq.sequence.impl.RangeJournal;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+/**
+ * 序列号生成器注册表
+ * <br>
+ * 多个业务名称共享同一个区间管理器(以及它持有的数据源、连接)，每个业务名称的序列号生成器在第一次使用时创建并缓存，
+ * 启动时只需要初始化一次区间管理器，业务名称再多也不会增加连接数和建表次数。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-13 09:40
+ */
+public class SequenceRegistry {
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    /**
+     * 可以直接作为日志文件名的业务名称
+     */
+    private static final Pattern PLAIN_JOURNAL_NAME = Pattern.compile("[A-Za-z0-9_\\-][A-Za-z0-9_.\\-]*");
+
+    /**
+     * Windows保留的设备名，带扩展名时同样不能作为文件名
+     */
+    private static final Pattern RESERVED_FILE_NAME = Pattern.compile("(?i)(con|prn|aux|nul|com[1-9]|lpt[1-9])(\\..*)?");
+
+    /**
+     * 常见文件系统允许的文件名最大长度
+     */
+    private static final int MAX_FILE_NAME_LENGTH = 255;
+
+    /**
+     * 共享的区间管理器，需要已经初始化
+     */
+    private final SequenceRangeManager sequenceRangeManager;
+
+    /**
+     * 业务名称到序列号生成器的缓存
+     */
+    private final ConcurrentMap<String, Sequence> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * 区间剩余比例低于该值时后台预取下一个区间，0表示不预取
+     */
+    private double prefetchThreshold = 0;
+
+    /**
+     * 执行预取的线程池
+     */
+    private Executor prefetchExecutor;
+
+    /**
+     * 每个线程一次从区间中切出的序列号个数，0表示不切分
+     */
+    private int subBlockSize = 0;
+
+    /**
+     * 本地区间日志目录，每个业务名称一个文件，为空表示不记录
+     */
+    private File journalDirectory;
+
+    /**
+     * 日志每次提升高水位时预留的序列号个数，进程崩溃后最多丢弃这么多个序列号
+     */
+    private long journalReserve = 1000;
+
+    /**
+     * 日志提升高水位时是否刷盘，开启后操作系统崩溃也不会重复发放
+     */
+    private boolean journalForce = false;
+
+    public SequenceRegistry(SequenceRangeManager sequenceRangeManager) {
+        if (null == sequenceRangeManager) {
+            throw new SequenceException("[SequenceRegistry] sequenceRangeManager is null.");
+        }
+        this.sequenceRangeManager = sequenceRangeManager;
+    }
+
+    /**
+     * 获取业务名称对应的序列号生成器，不存在时创建
+     *
+     * @param bizName 业务名称
+     * @return 序列号生成器
+     */
+    public Sequence getSequence(String bizName) {
+        if (null == bizName || bizName.trim().length() == 0) {
+            throw new SequenceException("[SequenceRegistry-getSequence] bizName is empty.");
+        }
+        Sequence sequence = sequences.get(bizName);
+        if (null != sequence) {
+            return sequence;
+        }
+        return sequences.computeIfAbsent(bizName, this::createSequence);
+    }
+
+    /**
+     * 预热一批业务名称：通过区间管理器的nextRanges一次取回所有还没有创建的业务名称的第一个区间，
+     * 启动时间不再随业务名称个数线性增长。开启本地日志时，能从日志恢复区间的业务名称不再访问区间管理器
+     *
+     * @param bizNames 业务名称
+     * @throws SequenceException 获取区间异常
+     */
+    public void warmUp(Collection<String> bizNames) throws SequenceException {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String bizName : bizNames) {
+            if (null == bizName || bizName.trim().length() == 0) {
+                throw new SequenceException("[SequenceRegistry-warmUp] bizName is empty.");
+            }
+            if (!sequences.containsKey(bizName)) {
+                missing.add(bizName);
+            }
+        }
+        if (null != journalDirectory) {
+            missing.removeIf(bizName -> {
+                Sequence sequence = getSequence(bizName);
+                return sequence instanceof DefaultRangeSequence && ((DefaultRangeSequence) sequence).resume();
+            });
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Map<String, SequenceRange> ranges = sequenceRangeManager.nextRanges(missing);
+        for (String bizName : missing) {
+            SequenceRange range = ranges.get(bizName);
+            Sequence sequence = sequences.computeIfAbsent(bizName, this::createSequence);
+            if (sequence instanceof DefaultRangeSequence) {
+                ((DefaultRangeSequence) sequence).setInitialRange(range);
+            }
+        }
+    }
+
+    /**
+     * 关闭所有序列号生成器，开启本地日志时记录每个业务名称剩余的区间，重启后继续使用。
+     * 通常在应用停止或JVM的shutdown hook中调用
+     */
+    public void close() {
+        for (Sequence sequence : sequences.values()) {
+            if (sequence instanceof DefaultRangeSequence) {
+                ((DefaultRangeSequence) sequence).close();
+            }
+        }
+    }
+
+    /**
+     * 生成业务名称的下一个序列号
+     *
+     * @param bizName 业务名称
+     * @return 序列号
+     * @throws SequenceException 序列号生成异常
+     */
+    public long nextValue(String bizName) throws SequenceException {
+        return getSequence(bizName).nextValue();
+    }
+
+    /**
+     * 创建业务名称对应的序列号生成器
+     *
+     * @param bizName 业务名称
+     * @return 序列号生成器
+     */
+    protected Sequence createSequence(String bizName) {
+        DefaultRangeSequence sequence = new DefaultRangeSequence();
+        sequence.setRangeName(bizName);
+        sequence.setPrefetchThreshold(this.prefetchThreshold);
+        sequence.setPrefetchExecutor(this.prefetchExecutor);
+        sequence.setSubBlockSize(this.subBlockSize);
+        sequence.setSeqRangeMgr(this.sequenceRangeManager);
+        if (null != this.journalDirectory) {
+            sequence.setJournal(new RangeJournal(new File(this.journalDirectory, journalFileName(bizName)),
+                this.journalReserve, this.journalForce));
+        }
+        return sequence;
+    }
+
+    /**
+     * 业务名称对应的日志文件名。只含字母、数字、下划线、中划线和点(不以点开头)且不是系统保留名的业务名称直接使用，
+     * 其它业务名称(含/、..、中文等)用~加UTF-8字节的十六进制表示，~不会出现在直接使用的名称中，两种文件名不会冲突
+     *
+     * @param bizName 业务名称
+     * @return 日志文件名
+     * @throws SequenceException 业务名称过长
+     */
+    static String journalFileName(String bizName) {
+        String name;
+        if (PLAIN_JOURNAL_NAME.matcher(bizName).matches() && !RESERVED_FILE_NAME.matcher(bizName).matches()) {
+            name = bizName;
+        } else {
+            byte[] bytes = bizName.getBytes(StandardCharsets.UTF_8);
+            StringBuilder builder = new StringBuilder(1 + bytes.length * 2).append('~');
+            for (byte b : bytes) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            name = builder.toString();
+        }
+        name += JOURNAL_SUFFIX;
+        if (name.length() > MAX_FILE_NAME_LENGTH) {
+            throw new SequenceException("[SequenceRegistry-journalFileName] bizName is too long for journal: " + bizName);
+        }
+        return name;
+    }
+
+    /**
+     * 已经创建过序列号生成器的业务名称
+     *
+     * @return 业务名称集合(只读)
+     */
+    public Set<String> getBizNames() {
+        return Collections.unmodifiableSet(sequences.keySet());
+    }
+
+    public SequenceRangeManager getSequenceRangeManager() {
+        return sequenceRangeManager;
+    }
+
+    public double getPrefetchThreshold() {
+        return prefetchThreshold;
+    }
+
+    public void setPrefetchThreshold(double prefetchThreshold) {
+        this.prefetchThreshold = prefetchThreshold;
+    }
+
+    public Executor getPrefetchExecutor() {
+        return prefetchExecutor;
+    }
+
+    public void setPrefetchExecutor(Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    public int getSubBlockSize() {
+        return subBlockSize;
+    }
+
+    public void setSubBlockSize(int subBlockSize) {
+        this.subBlockSize = subBlockSize;
+    }
+
+    public File getJournalDirectory() {
+        return journalDirectory;
+    }
+
+    public void setJournalDirectory(File journalDirectory) {
+        this.journalDirectory = journalDirectory;
+    }
+
+    public long getJournalReserve() {
+        return journalReserve;
+    }
+
+    public void setJournalReserve(long journalReserve) {
+        this.journalReserve = journalReserve;
+    }
+
+    public boolean isJournalForce() {
+        return journalForce;
+    }
+
+    public void setJournalForce(boolean journalForce) {
+        this.journalForce = journalForce;
+    }
+}
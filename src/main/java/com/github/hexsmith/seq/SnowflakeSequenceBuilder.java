@@ -16,7 +16,12 @@
 package com.github.hexsmith.seq;
 
 import com.github.hexsmith.seq.sequence.Sequence;
+import com.github.hexsmith.seq.sequence.impl.ClockBackwardsPolicy;
+import com.github.hexsmith.seq.sequence.impl.SnowflakeLayout;
 import com.github.hexsmith.seq.sequence.impl.SnowflakeSequence;
+import com.github.hexsmith.seq.worker.AbstractWorkerIdLeaseManager;
+import com.github.hexsmith.seq.worker.WorkerIdLease;
+import com.github.hexsmith.seq.worker.WorkerIdLeaseManager;
 
 /**
  * 基于雪花算法，序列号生成器构建者
@@ -28,13 +33,53 @@ import com.github.hexsmith.seq.sequence.impl.SnowflakeSequence;
 public class SnowflakeSequenceBuilder implements SequenceBuilder {
 
     /**
-     * 数据中心ID，值的范围在[0,31]之间，一般可以设置机房的IDC[必选]
+     * 数据中心ID，默认布局下值的范围在[0,31]之间，一般可以设置机房的IDC[必选]
      */
     private long dataCenterId;
     /**
-     * 工作机器ID，值的范围在[0,31]之间，一般可以设置机器编号[必选]
+     * 工作机器ID，默认布局下值的范围在[0,31]之间，一般可以设置机器编号[必选]
      */
     private long workerId;
+    /**
+     * workerId租约管理器，设置后从DB/Redis中自动申请dataCenterId和workerId，忽略手工设置的值[可选]
+     */
+    private WorkerIdLeaseManager workerIdLeaseManager;
+    /**
+     * 时间所占的位数[可选，默认：41]
+     */
+    private int timestampBits = SnowflakeLayout.DEFAULT.getTimestampBits();
+    /**
+     * 数据中心ID所占的位数[可选，默认：5]
+     */
+    private int dataCenterIdBits = SnowflakeLayout.DEFAULT.getDataCenterIdBits();
+    /**
+     * 工作机器ID所占的位数[可选，默认：5]
+     */
+    private int workerIdBits = SnowflakeLayout.DEFAULT.getWorkerIdBits();
+    /**
+     * 序列所占的位数[可选，默认：12]
+     */
+    private int sequenceBits = SnowflakeLayout.DEFAULT.getSequenceBits();
+    /**
+     * 开始时间截[可选，默认：2018-01-01]
+     */
+    private long epoch = SnowflakeLayout.DEFAULT.getEpoch();
+    /**
+     * 时间单位毫秒数，例如10表示以10毫秒为单位[可选，默认：1]
+     */
+    private long timeUnitMillis = SnowflakeLayout.DEFAULT.getTimeUnitMillis();
+    /**
+     * 时钟回退处理策略，SPARE_WORKER时workerId只能取低一半，租约管理器的maxWorkerId也要配置在低一半以内[可选，默认：FAIL]
+     */
+    private ClockBackwardsPolicy clockBackwardsPolicy = ClockBackwardsPolicy.FAIL;
+    /**
+     * 可以容忍的时钟回退毫秒数[可选，默认：5]
+     */
+    private long maxBackwardsMillis = 5L;
+    /**
+     * 是否使用单调时钟代替System.currentTimeMillis[可选，默认：false]
+     */
+    private boolean monotonicClock = false;
 
     /**
      * 构建一个序列号生成器
@@ -43,9 +88,36 @@ public class SnowflakeSequenceBuilder implements SequenceBuilder {
      */
     @Override
     public Sequence build() {
-        SnowflakeSequence sequence = new SnowflakeSequence();
-        sequence.setDataCenterId(this.dataCenterId);
-        sequence.setWorkerId(this.workerId);
+        SnowflakeLayout layout =
+            new SnowflakeLayout(timestampBits, dataCenterIdBits, workerIdBits, sequenceBits, epoch, timeUnitMillis);
+        SnowflakeSequence sequence = new SnowflakeSequence(layout);
+        // 先设置策略，SPARE_WORKER会校验之后设置的workerId
+        sequence.setClockBackwardsPolicy(this.clockBackwardsPolicy);
+        if (null != this.workerIdLeaseManager) {
+            if (this.clockBackwardsPolicy == ClockBackwardsPolicy.SPARE_WORKER
+                && this.workerIdLeaseManager instanceof AbstractWorkerIdLeaseManager) {
+                // 高一半的workerId留作备用，租约管理器可能被多个生成器共用，这里只校验不修改
+                long maxWorkerId = ((AbstractWorkerIdLeaseManager) this.workerIdLeaseManager).getMaxWorkerId();
+                long spareMaxWorkerId = ((layout.getMaxWorkerId() + 1) >> 1) - 1;
+                if (maxWorkerId > spareMaxWorkerId) {
+                    throw new IllegalArgumentException("[SnowflakeSequenceBuilder-build] SPARE_WORKER策略下"
+                        + "租约管理器的maxWorkerId 不能大于" + spareMaxWorkerId + ", maxWorkerId = " + maxWorkerId
+                        + "，请在租约管理器上设置maxWorkerId.");
+                }
+            }
+            WorkerIdLease lease = this.workerIdLeaseManager.acquire();
+            try {
+                sequence.setWorkerIdLease(lease);
+            } catch (RuntimeException e) {
+                this.workerIdLeaseManager.release(lease);
+                throw e;
+            }
+        } else {
+            sequence.setDataCenterId(this.dataCenterId);
+            sequence.setWorkerId(this.workerId);
+        }
+        sequence.setMaxBackwardsMillis(this.maxBackwardsMillis);
+        sequence.setMonotonicClock(this.monotonicClock);
         return sequence;
     }
 
@@ -63,4 +135,57 @@ public class SnowflakeSequenceBuilder implements SequenceBuilder {
         return this;
     }
 
+    /**
+     * 设置workerId租约管理器，管理器需要已经初始化
+     *
+     * @param workerIdLeaseManager workerId租约管理器
+     * @return 构建者
+     */
+    public SnowflakeSequenceBuilder workerIdLeaseManager(WorkerIdLeaseManager workerIdLeaseManager) {
+        this.workerIdLeaseManager = workerIdLeaseManager;
+        return this;
+    }
+
+    /**
+     * 设置位分配，四部分之和必须等于63
+     *
+     * @param timestampBits 时间所占的位数
+     * @param dataCenterIdBits 数据中心ID所占的位数
+     * @param workerIdBits 工作机器ID所占的位数
+     * @param sequenceBits 序列所占的位数
+     * @return 构建者
+     */
+    public SnowflakeSequenceBuilder bits(int timestampBits, int dataCenterIdBits, int workerIdBits, int sequenceBits) {
+        this.timestampBits = timestampBits;
+        this.dataCenterIdBits = dataCenterIdBits;
+        this.workerIdBits = workerIdBits;
+        this.sequenceBits = sequenceBits;
+        return this;
+    }
+
+    public SnowflakeSequenceBuilder epoch(long epoch) {
+        this.epoch = epoch;
+        return this;
+    }
+
+    public SnowflakeSequenceBuilder timeUnitMillis(long timeUnitMillis) {
+        this.timeUnitMillis = timeUnitMillis;
+        return this;
+    }
+
+    public SnowflakeSequenceBuilder clockBackwardsPolicy(ClockBackwardsPolicy clockBackwardsPolicy) {
+        this.clockBackwardsPolicy = clockBackwardsPolicy;
+        return this;
+    }
+
+    public SnowflakeSequenceBuilder maxBackwardsMillis(long maxBackwardsMillis) {
+        this.maxBackwardsMillis = maxBackwardsMillis;
+        return this;
+    }
+
+    public SnowflakeSequenceBuilder monotonicClock(boolean monotonicClock) {
+        this.monotonicClock = monotonicClock;
+        return this;
+    }
+
 }
@@ -41,4 +41,14 @@ public class SequenceException extends RuntimeException {
     public SequenceException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * 用于会在热点路径上反复抛出的异常，可以不记录堆栈，避免每次抛出都遍历调用栈
+     *
+     * @param message            异常信息
+     * @param writableStackTrace 是否记录堆栈
+     */
+    public SequenceException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
 }
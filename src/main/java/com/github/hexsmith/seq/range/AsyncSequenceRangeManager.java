@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 支持异步获取区间的区间管理器，用于异步驱动的后端(如异步Redis客户端)，获取区间时不占用调用线程。
+ * <br>
+ * 同步的区间管理器可以通过{@link com.github.hexsmith.seq.range.impl.async.ExecutorSequenceRange}
+ * 放到独立线程池中执行
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-12 14:00
+ */
+public interface AsyncSequenceRangeManager extends SequenceRangeManager {
+
+    /**
+     * 异步获取指定区间名的下一个区间
+     *
+     * @param name 区间名
+     * @return 区间，获取失败时以SequenceException异常完成
+     */
+    CompletableFuture<SequenceRange> nextRangeAsync(String name);
+
+    /**
+     * 同步获取区间，默认等待nextRangeAsync完成
+     *
+     * @param name 区间名
+     * @return 返回区间
+     * @throws SequenceException 异常
+     */
+    @Override
+    default SequenceRange nextRange(String name) throws SequenceException {
+        try {
+            return nextRangeAsync(name).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SequenceException) {
+                throw (SequenceException) e.getCause();
+            }
+            throw new SequenceException(e.getCause());
+        }
+    }
+
+}
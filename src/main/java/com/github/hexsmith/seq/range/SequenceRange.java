@@ -15,16 +15,17 @@
  */
 package com.github.hexsmith.seq.range;
 
-import java.util.concurrent.atomic.AtomicLong;
-
 /**
  * 序列区间对象模型
+ * <br>
+ * 当前值是一个volatile long，通过AtomicLongFieldUpdater更新，不再额外引用一个AtomicLong对象；
+ * 当前值前后有填充，见{@link SequenceRangeValue}。区间用完后先读后写，不再无限制地递增当前值
  *
  * @author yuzp
  * @version V1.0
  * @since 2018-06-05 10:23
  */
-public class SequenceRange {
+public class SequenceRange extends SequenceRangeRhsPadding {
 
     /**
      * 区间的序列号开始值
@@ -34,10 +35,6 @@ public class SequenceRange {
      * 区间的序列号结束值
      */
     private final long max;
-    /**
-     * 区间的序列号当前值
-     */
-    private final AtomicLong value;
     /**
      * 区间的序列号是否分配完毕，每次分配完毕就会去重新获取一个新的区间
      */
@@ -46,7 +43,7 @@ public class SequenceRange {
     public SequenceRange(long min, long max) {
         this.min = min;
         this.max = max;
-        this.value = new AtomicLong(min);
+        this.value = min;
     }
 
     /**
@@ -55,15 +52,56 @@ public class SequenceRange {
      * @return 下一个序列号，如果返回-1表示序列号分配完毕
      */
     public long getAndIncrement() {
-        long currentValue = value.getAndIncrement();
+        // 区间用完后只读不写，等待切换的线程不会在当前值所在的缓存行上互相争抢
+        if (value > max) {
+            return over();
+        }
+        long currentValue = VALUE.getAndIncrement(this);
         if (currentValue > max) {
-            rangeOver = true;
-            return -1;
+            return over();
+        }
+
+        return currentValue;
+    }
+
+    /**
+     * 一次申请delta个序列号，返回这段序列号的起始值
+     * <br>
+     * 区间剩余的序列号可能不足delta个，实际可用的个数为 min(delta, max - 起始值 + 1)
+     *
+     * @param delta 申请的个数
+     * @return 起始序列号，如果返回-1表示序列号分配完毕
+     */
+    public long getAndAdd(int delta) {
+        if (value > max) {
+            return over();
+        }
+        long currentValue = VALUE.getAndAdd(this, delta);
+        if (currentValue > max) {
+            return over();
         }
 
         return currentValue;
     }
 
+    /**
+     * 封存区间，之后不再分配序列号
+     *
+     * @return 第一个没有分配的序列号，如果返回-1表示序列号已经分配完毕
+     */
+    public long drain() {
+        long currentValue = VALUE.getAndSet(this, max + 1);
+        rangeOver = true;
+        return currentValue > max ? -1 : currentValue;
+    }
+
+    private long over() {
+        if (!rangeOver) {
+            rangeOver = true;
+        }
+        return -1;
+    }
+
     public long getMin() {
         return min;
     }
@@ -17,6 +17,10 @@ package com.github.hexsmith.seq.range;
 
 import com.github.hexsmith.seq.exception.SequenceException;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * 区间管理器接口
  *
@@ -35,6 +39,24 @@ public interface SequenceRangeManager {
      */
     SequenceRange nextRange(String name) throws SequenceException;
 
+    /**
+     * 一次获取多个区间名的下一个区间，用于启动时预热大量业务名称。
+     * 默认逐个调用nextRange，DB和Redis实现会合并成批量语句或pipeline
+     *
+     * @param names 区间名
+     * @return 区间名到区间的映射
+     * @throws SequenceException 异常
+     */
+    default Map<String, SequenceRange> nextRanges(Collection<String> names) throws SequenceException {
+        Map<String, SequenceRange> ranges = new LinkedHashMap<>();
+        for (String name : names) {
+            if (!ranges.containsKey(name)) {
+                ranges.put(name, nextRange(name));
+            }
+        }
+        return ranges;
+    }
+
     /**
      * 初始化
      */
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 区间当前值所在的字段，前后各用128字节填充，保证当前值独占缓存行(含相邻行预取)，
+ * 不会和区间的min/max、其它对象的字段发生伪共享
+ * <br>
+ * HotSpot总是先排父类的字段，因此通过继承实现的填充不会被字段重排打乱
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-11 10:00
+ */
+abstract class SequenceRangeValue extends SequenceRangeLhsPadding {
+
+    static final AtomicLongFieldUpdater<SequenceRangeValue> VALUE =
+        AtomicLongFieldUpdater.newUpdater(SequenceRangeValue.class, "value");
+
+    /**
+     * 区间的序列号当前值
+     */
+    volatile long value;
+}
+
+/**
+ * 当前值之前的填充
+ */
+abstract class SequenceRangeLhsPadding {
+
+    /**
+     * 占住对象头之后的4字节空隙，否则子类的int/boolean字段会被排进这个空隙，落到填充之外
+     */
+    int p;
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 当前值之后的填充
+ */
+abstract class SequenceRangeRhsPadding extends SequenceRangeValue {
+
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+/**
+ * 序列号值空间的一个分区：[base, base + size)
+ * <br>
+ * 多个后端(或同一区间名的多个物理行)各自从1开始分配本地区间，把本地区间平移到互不重叠的分区后，
+ * 不同来源的序列号不会重复。本地值超出分区大小时拒绝分配，而不是越界进入相邻分区。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-02 10:00
+ */
+public final class ValueSpacePartition {
+
+    /**
+     * 分区起始值
+     */
+    private final long base;
+
+    /**
+     * 分区大小，本地值必须小于该值
+     */
+    private final long size;
+
+    public ValueSpacePartition(long base, long size) {
+        if (base < 0) {
+            throw new SecurityException("[ValueSpacePartition] base < 0.");
+        }
+        if (size <= 0 || base > Long.MAX_VALUE - size) {
+            throw new SecurityException("[ValueSpacePartition] size must greater than 0 and base + size <= Long.MAX_VALUE.");
+        }
+        this.base = base;
+        this.size = size;
+    }
+
+    /**
+     * 第index个大小为size的分区
+     *
+     * @param index 分区下标，从0开始
+     * @param size  分区大小
+     * @return 分区
+     */
+    public static ValueSpacePartition of(int index, long size) {
+        if (index < 0 || (index > 0 && size > Long.MAX_VALUE / index)) {
+            throw new SecurityException("[ValueSpacePartition-of] partition " + index + " exceeds Long.MAX_VALUE.");
+        }
+        return new ValueSpacePartition(index * size, size);
+    }
+
+    /**
+     * 把本地区间平移到分区内
+     *
+     * @param local 本地区间，值在[0, size)内
+     * @return 平移后的区间
+     * @throws SequenceException 本地值超出分区
+     */
+    public SequenceRange translate(SequenceRange local) throws SequenceException {
+        if (local.getMin() < 0 || local.getMax() >= size) {
+            throw new SequenceException("Sequence value out of partition, range = [" + local.getMin() + ", "
+                + local.getMax() + "], partition size = " + size);
+        }
+        if (base == 0) {
+            return local;
+        }
+        return new SequenceRange(base + local.getMin(), base + local.getMax());
+    }
+
+    /**
+     * 序列号是否属于该分区
+     *
+     * @param value 序列号
+     * @return 是否属于
+     */
+    public boolean contains(long value) {
+        return value >= base && value - base < size;
+    }
+
+    public long getBase() {
+        return base;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "ValueSpacePartition{base=" + base + ", size=" + size + '}';
+    }
+}
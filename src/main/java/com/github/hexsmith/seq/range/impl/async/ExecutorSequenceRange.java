@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.async;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.AsyncSequenceRangeManager;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 把同步的区间管理器适配为异步区间管理器，装饰DB、Redis等区间管理器
+ * <br>
+ * nextRangeAsync在executor中调用被装饰管理器的nextRange，JDBC、Jedis的阻塞IO只占用executor的线程；
+ * 同步的nextRange和nextRanges直接调用被装饰管理器，不切换线程。
+ * executor应当是独立的线程池，不能是事件循环线程
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-12 14:30
+ */
+public class ExecutorSequenceRange implements AsyncSequenceRangeManager {
+
+    /**
+     * 被装饰的区间管理器[必选]
+     */
+    private SequenceRangeManager delegate;
+
+    /**
+     * 执行区间获取的线程池[必选]
+     */
+    private Executor executor;
+
+    /**
+     * 在executor中获取区间
+     *
+     * @param name 区间名
+     * @return 区间，获取失败或线程池拒绝时以SequenceException异常完成
+     */
+    @Override
+    public CompletableFuture<SequenceRange> nextRangeAsync(String name) {
+        CompletableFuture<SequenceRange> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(delegate.nextRange(name));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(
+                new SequenceException("[ExecutorSequenceRange-nextRangeAsync] executor rejected, name = " + name, e));
+        }
+        return future;
+    }
+
+    @Override
+    public SequenceRange nextRange(String name) throws SequenceException {
+        return delegate.nextRange(name);
+    }
+
+    @Override
+    public Map<String, SequenceRange> nextRanges(Collection<String> names) throws SequenceException {
+        return delegate.nextRanges(names);
+    }
+
+    /**
+     * 初始化
+     */
+    @Override
+    public void init() {
+        checkParam();
+        delegate.init();
+    }
+
+    private void checkParam() {
+        if (null == delegate) {
+            throw new SecurityException("[ExecutorSequenceRange-checkParam] delegate is null.");
+        }
+        if (null == executor) {
+            throw new SecurityException("[ExecutorSequenceRange-checkParam] executor is null.");
+        }
+    }
+
+    public SequenceRangeManager getDelegate() {
+        return delegate;
+    }
+
+    public void setDelegate(SequenceRangeManager delegate) {
+        this.delegate = delegate;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+}
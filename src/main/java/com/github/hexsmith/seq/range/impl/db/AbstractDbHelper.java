@@ -16,18 +16,18 @@
 package com.github.hexsmith.seq.range.impl.db;
 
 import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
 /**
- * 操作DB的工具类
+ * 操作DB的工具类，SQL由DbRangeSql预先生成，一次区间分配的所有语句在同一个连接上执行
  *
  * @author yuzp
  * @version V1.0
@@ -35,32 +35,7 @@ import javax.sql.DataSource;
  */
 abstract class AbstractDbHelper {
 
-    private static final long DELTA = 100000000L;
-
-    /**
-     * 建表SQL
-     */
-    private static final String SQL_CREATE_TABLE =
-        "CREATE TABLE IF NOT EXISTS #tableName(" + "id bigint(20) NOT NULL AUTO_INCREMENT,"
-            + "value bigint(20) NOT NULL," + "name varchar(32) NOT NULL," + "gmt_create DATETIME NOT NULL,"
-            + "gmt_modified DATETIME NOT NULL," + "PRIMARY KEY (`id`),UNIQUE uk_name (`name`)" + ")";
-    /**
-     * 新增数据SQL
-     */
-    private static final String SQL_INSERT_RANGE =
-        "INSERT IGNORE INTO #tableName(name,value,gmt_create,gmt_modified)" + " VALUE(?,?,?,?)";
-    /**
-     * 更新数据SQL
-     */
-    private static final String SQL_UPDATE_RANGE =
-        "UPDATE #tableName SET value=?,gmt_modified=? WHERE name=? AND " + "value=?";
-    /**
-     * 查询数据SQL
-     */
-    private static final String SQL_SELECT_RANGE = "SELECT value FROM #tableName WHERE name=?";
-
-
-    private static void close(AutoCloseable closeable) {
+    static void close(AutoCloseable closeable) {
         if (null != closeable) {
             try {
                 closeable.close();
@@ -73,15 +48,15 @@ abstract class AbstractDbHelper {
     /**
      * 创建表
      * @param dataSource 数据源
-     * @param tableName 表名
+     * @param sql 表对应的SQL
      */
-    static void creatTable(DataSource dataSource, String tableName) {
+    static void creatTable(DataSource dataSource, DbRangeSql sql) {
         Connection connection = null;
         Statement statement = null;
         try {
             connection = dataSource.getConnection();
             statement = connection.createStatement();
-            statement.executeUpdate(SQL_CREATE_TABLE.replace("#tableName", tableName));
+            statement.executeUpdate(sql.getCreateTable());
         } catch (SQLException e) {
             e.printStackTrace();
         } finally {
@@ -91,105 +66,59 @@ abstract class AbstractDbHelper {
     }
 
     /**
-     * 新增数据区间
-     * @param dataSource 数据源
-     * @param tableName 表名
-     * @param rangeName 区间名
-     * @param stepStart 初始位置
+     * 从连接池取一个连接分配区间，用完归还
+     *
+     * @param dataSource DB来源
+     * @param sql        表对应的SQL
+     * @param mode       分配方式
+     * @param rangeName  区间名称
+     * @param stepStart  初始位置
+     * @param step       步长
+     * @return 区间，区间刚被新增或乐观更新失败时返回null，由上层重新执行
      */
-    private static void insertRange(DataSource dataSource, String tableName, String rangeName, Long stepStart) {
-        Connection connection = null;
-        PreparedStatement preparedStatement = null;
+    static SequenceRange nextRange(DataSource dataSource, DbRangeSql sql, DbAllocationMode mode, String rangeName,
+                                   long stepStart, int step) {
+        DbRangeSession session = openSession(dataSource, sql, false);
         try {
-            connection = dataSource.getConnection();
-            preparedStatement = connection.prepareStatement(SQL_INSERT_RANGE.replace("#tableName", tableName));
-            preparedStatement.setString(1, rangeName);
-            preparedStatement.setLong(2, stepStart);
-            preparedStatement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
-            preparedStatement.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
-            preparedStatement.executeUpdate();
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return session.nextRange(mode, rangeName, stepStart, step);
         } finally {
-            close(preparedStatement);
-            close(connection);
+            session.close();
         }
     }
 
     /**
-     * 更新数据区间
-     * @param dataSource 数据源
-     * @param tableName 表名
-     * @param rangeName 区间名
-     * @param newValue 新区间值
-     * @param oldValue 旧区间值
-     * @return
+     * 从连接池取一个连接批量分配区间，用完归还
+     *
+     * @param dataSource DB来源
+     * @param sql        表对应的SQL
+     * @param names      区间名，已排序去重
+     * @param steps      每个区间名的步长
+     * @param stepStart  初始位置
+     * @return 区间名到区间的映射，新增失败的区间名不在其中
      */
-    static boolean updateRange(DataSource dataSource, String tableName, String rangeName, Long newValue, Long oldValue) {
-        Connection connection = null;
-        PreparedStatement statement = null;
+    static Map<String, SequenceRange> nextRanges(DataSource dataSource, DbRangeSql sql, List<String> names,
+                                                 Map<String, Integer> steps, long stepStart) {
+        DbRangeSession session = openSession(dataSource, sql, false);
         try {
-            connection = dataSource.getConnection();
-            statement = connection.prepareStatement(SQL_UPDATE_RANGE.replace("#tableName", tableName));
-            statement.setLong(1, newValue);
-            statement.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
-            statement.setString(3, rangeName);
-            statement.setLong(4, oldValue);
-            int affectedRows = statement.executeUpdate();
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
+            return session.nextRanges(names, steps, stepStart);
         } finally {
-            close(statement);
-            close(connection);
+            session.close();
         }
-        return false;
     }
 
     /**
-     * 查询区间，如果区间不存在，会新增一个区间，并返回null，由上层重新执行
+     * 打开一个会话
      *
-     * @param dataSource DB来源
-     * @param tableName  来源
-     * @param rangeName  区间名称
-     * @param stepStart  初始位置
-     * @return 区间值
+     * @param dataSource      DB来源
+     * @param sql             表对应的SQL
+     * @param cacheStatements 是否缓存PreparedStatement，长期持有的专用会话使用
+     * @return 会话
      */
-    static Long selectRange(DataSource dataSource, String tableName, String rangeName, long stepStart) {
-        Connection connection = null;
-        PreparedStatement statement = null;
-        ResultSet resultSet = null;
-        long oldValue;
-
+    static DbRangeSession openSession(DataSource dataSource, DbRangeSql sql, boolean cacheStatements) {
         try {
-            connection = dataSource.getConnection();
-            statement = connection.prepareStatement(SQL_SELECT_RANGE.replace("#tableName", tableName));
-            statement.setString(1, rangeName);
-            resultSet = statement.executeQuery();
-            if (!resultSet.next()) {
-                // 没有此类型数据，需要初始化
-                insertRange(dataSource, tableName, rangeName, stepStart);
-                return null;
-            }
-            oldValue = resultSet.getLong(1);
-            if (oldValue < 0) {
-                String msg =
-                    "Sequence value cannot be less than zero, value = " + oldValue + ", please check table sequence"
-                        + tableName;
-                throw new SequenceException(msg);
-            }
-            if (oldValue > Long.MAX_VALUE - DELTA) {
-                String msg =
-                    "Sequence value overflow, value = " + oldValue + ", please check table sequence" + tableName;
-                throw new SequenceException(msg);
-            }
-            return oldValue;
+            return new DbRangeSession(dataSource.getConnection(), sql, cacheStatements);
         } catch (SQLException e) {
             throw new SequenceException(e);
-        } finally {
-            close(resultSet);
-            close(statement);
-            close(connection);
         }
     }
 
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.db;
+
+/**
+ * DB区间分配方式
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-27 10:05
+ */
+public enum DbAllocationMode {
+
+    /**
+     * 先查询再按旧值条件更新(CAS)，失败后重试。节点多、竞争激烈时会有大量失败的更新
+     */
+    OPTIMISTIC,
+
+    /**
+     * 单条UPDATE语句原子地增加区间值并取回结果，写法由DbDialect决定，不会因竞争而失败
+     */
+    ATOMIC_UPDATE,
+
+    /**
+     * 在一个事务中SELECT ... FOR UPDATE锁住行再更新，竞争者在行锁上排队，不需要方言支持
+     */
+    SELECT_FOR_UPDATE
+}
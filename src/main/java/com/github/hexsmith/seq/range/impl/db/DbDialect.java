@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.db;
+
+/**
+ * 数据库方言，决定建表、不存在时新增、单条语句原子分配区间的SQL写法，每种数据库使用各自最快的形式。
+ * 查询、乐观更新和加锁更新使用标准SQL，所有方言共用
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-27 10:00
+ */
+public enum DbDialect {
+
+    /**
+     * MySQL，通过LAST_INSERT_ID(expr)把更新后的值留在当前连接上，再在同一连接上读取
+     */
+    MYSQL("CREATE TABLE IF NOT EXISTS #tableName(" + "id bigint(20) NOT NULL AUTO_INCREMENT,"
+        + "value bigint(20) NOT NULL," + "name varchar(32) NOT NULL," + "gmt_create DATETIME NOT NULL,"
+        + "gmt_modified DATETIME NOT NULL," + "PRIMARY KEY (`id`),UNIQUE uk_name (`name`)" + ")",
+        "INSERT IGNORE INTO #tableName(name,value,gmt_create,gmt_modified) VALUES(?,?,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP)",
+        "UPDATE #tableName SET value=LAST_INSERT_ID(value+?),gmt_modified=CURRENT_TIMESTAMP WHERE name=? AND value<=?",
+        "SELECT LAST_INSERT_ID()", UpdatedValue.SELECT_AFTER_UPDATE),
+
+    /**
+     * PostgreSQL(9.5+)，ON CONFLICT DO NOTHING新增，UPDATE ... RETURNING在一次往返中返回更新后的值
+     */
+    POSTGRESQL("CREATE TABLE IF NOT EXISTS #tableName(id BIGSERIAL PRIMARY KEY,value BIGINT NOT NULL,"
+        + "name VARCHAR(32) NOT NULL,gmt_create TIMESTAMP NOT NULL,gmt_modified TIMESTAMP NOT NULL,"
+        + "CONSTRAINT uk_#tableName_name UNIQUE (name))",
+        "INSERT INTO #tableName(name,value,gmt_create,gmt_modified) VALUES(?,?,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP) "
+            + "ON CONFLICT (name) DO NOTHING",
+        "UPDATE #tableName SET value=value+?,gmt_modified=CURRENT_TIMESTAMP WHERE name=? AND value<=? RETURNING value",
+        null, UpdatedValue.RESULT_SET),
+
+    /**
+     * H2，任意兼容模式下都可用，适合进程内的集成测试和基准测试。
+     * 通过SET(@变量, expr)把更新后的值留在会话变量中，再在同一连接上读取
+     */
+    H2("CREATE TABLE IF NOT EXISTS #tableName(id BIGINT AUTO_INCREMENT PRIMARY KEY,value BIGINT NOT NULL,"
+        + "name VARCHAR(32) NOT NULL,gmt_create TIMESTAMP NOT NULL,gmt_modified TIMESTAMP NOT NULL,"
+        + "CONSTRAINT uk_#tableName_name UNIQUE (name))",
+        "INSERT INTO #tableName(name,value,gmt_create,gmt_modified) SELECT ?,?,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP FROM DUAL "
+            + "WHERE NOT EXISTS (SELECT 1 FROM #tableName WHERE name=?)",
+        "UPDATE #tableName SET value=SET(@sequence_value, value+?),gmt_modified=CURRENT_TIMESTAMP "
+            + "WHERE name=? AND value<=?",
+        "SELECT @sequence_value", UpdatedValue.SELECT_AFTER_UPDATE),
+
+    /**
+     * Oracle(12c+)，没有IF NOT EXISTS，建表时忽略ORA-00955；MERGE新增；
+     * 在PL/SQL块中UPDATE ... RETURNING INTO输出参数，一次往返返回更新后的值
+     */
+    ORACLE("BEGIN EXECUTE IMMEDIATE 'CREATE TABLE #tableName(id NUMBER(19) GENERATED BY DEFAULT AS IDENTITY "
+        + "PRIMARY KEY,value NUMBER(19) NOT NULL,name VARCHAR2(32) NOT NULL,gmt_create TIMESTAMP NOT NULL,"
+        + "gmt_modified TIMESTAMP NOT NULL,CONSTRAINT uk_#tableName_name UNIQUE (name))'; "
+        + "EXCEPTION WHEN OTHERS THEN IF SQLCODE != -955 THEN RAISE; END IF; END;",
+        "MERGE INTO #tableName t USING (SELECT ? AS name FROM DUAL) s ON (t.name = s.name) "
+            + "WHEN NOT MATCHED THEN INSERT (name,value,gmt_create,gmt_modified) VALUES (s.name,?,CURRENT_TIMESTAMP,CURRENT_TIMESTAMP)",
+        "BEGIN UPDATE #tableName SET value=value+?,gmt_modified=CURRENT_TIMESTAMP WHERE name=? AND value<=? "
+            + "RETURNING value INTO ?; END;",
+        null, UpdatedValue.OUT_PARAMETER);
+
+    /**
+     * 建表SQL，表已存在时不报错
+     */
+    private final String createTableSql;
+
+    /**
+     * 区间不存在时新增的SQL，参数依次为：区间名、初始值，有第3个参数时为区间名。时间取数据库的CURRENT_TIMESTAMP
+     */
+    private final String insertRangeSql;
+
+    /**
+     * 原子增加区间值的SQL，参数依次为：步长、区间名、允许的最大旧值
+     */
+    private final String atomicUpdateSql;
+
+    /**
+     * 读取更新后的值的SQL，仅SELECT_AFTER_UPDATE使用
+     */
+    private final String selectUpdatedSql;
+
+    /**
+     * 取回更新后的值的方式
+     */
+    private final UpdatedValue updatedValue;
+
+    DbDialect(String createTableSql, String insertRangeSql, String atomicUpdateSql, String selectUpdatedSql,
+              UpdatedValue updatedValue) {
+        this.createTableSql = createTableSql;
+        this.insertRangeSql = insertRangeSql;
+        this.atomicUpdateSql = atomicUpdateSql;
+        this.selectUpdatedSql = selectUpdatedSql;
+        this.updatedValue = updatedValue;
+    }
+
+    String getCreateTableSql() {
+        return createTableSql;
+    }
+
+    String getInsertRangeSql() {
+        return insertRangeSql;
+    }
+
+    String getAtomicUpdateSql() {
+        return atomicUpdateSql;
+    }
+
+    String getSelectUpdatedSql() {
+        return selectUpdatedSql;
+    }
+
+    UpdatedValue getUpdatedValue() {
+        return updatedValue;
+    }
+
+    /**
+     * 原子更新后取回新值的方式
+     */
+    enum UpdatedValue {
+
+        /**
+         * 更新语句本身返回结果集
+         */
+        RESULT_SET,
+
+        /**
+         * 更新后在同一连接上执行selectUpdatedSql
+         */
+        SELECT_AFTER_UPDATE,
+
+        /**
+         * 更新语句是PL/SQL块，新值在第4个输出参数中
+         */
+        OUT_PARAMETER
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.db;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在一个连接上完成一次区间分配的全部SQL。
+ * 普通会话每次分配从连接池取一个连接，用完即关闭；专用会话长期持有一个连接并缓存PreparedStatement，非线程安全，由调用方加锁
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-28 10:00
+ */
+final class DbRangeSession implements AutoCloseable {
+
+    private static final long DELTA = 100000000L;
+
+    /**
+     * 区间不存在或没有更新到数据，用基本类型的哨兵值代替null，避免分配区间时装箱
+     */
+    private static final long NOT_FOUND = Long.MIN_VALUE;
+
+    private final Connection connection;
+
+    private final DbRangeSql sql;
+
+    /**
+     * 缓存的PreparedStatement，为空表示不缓存
+     */
+    private final Map<String, PreparedStatement> statements;
+
+    /**
+     * 执行SQL时出现过异常，专用会话需要丢弃重建
+     */
+    private boolean broken;
+
+    DbRangeSession(Connection connection, DbRangeSql sql, boolean cacheStatements) {
+        this.connection = connection;
+        this.sql = sql;
+        this.statements = cacheStatements ? new HashMap<String, PreparedStatement>() : null;
+    }
+
+    /**
+     * 分配一个区间
+     *
+     * @param mode      分配方式
+     * @param rangeName 区间名称
+     * @param stepStart 初始位置
+     * @param step      步长
+     * @return 区间，区间刚被新增或乐观更新失败时返回null，由上层重新执行
+     */
+    SequenceRange nextRange(DbAllocationMode mode, String rangeName, long stepStart, int step) {
+        try {
+            switch (mode) {
+                case ATOMIC_UPDATE:
+                    long newValue = atomicRange(rangeName, stepStart, step);
+                    return NOT_FOUND == newValue ? null : new SequenceRange(newValue - step + 1, newValue);
+                case SELECT_FOR_UPDATE:
+                    long lockedValue = lockRange(rangeName, stepStart, step);
+                    return NOT_FOUND == lockedValue ? null : new SequenceRange(lockedValue + 1, lockedValue + step);
+                default:
+                    long oldValue = selectRange(rangeName, stepStart);
+                    if (NOT_FOUND == oldValue || !updateRange(rangeName, oldValue + step, oldValue)) {
+                        return null;
+                    }
+                    return new SequenceRange(oldValue + 1, oldValue + step);
+            }
+        } catch (SQLException e) {
+            broken = true;
+            throw new SequenceException(e);
+        }
+    }
+
+    /**
+     * 批量分配区间：先查出不存在的区间名并批量新增，再在一个事务中锁住所有行并批量更新，
+     * 往返次数与区间名个数无关。新增失败的区间名不在返回结果中，由上层单独获取
+     *
+     * @param names     区间名，调用方已排序去重，保证各事务按相同顺序加锁
+     * @param steps     每个区间名的步长
+     * @param stepStart 初始位置
+     * @return 区间名到区间的映射
+     */
+    Map<String, SequenceRange> nextRanges(List<String> names, Map<String, Integer> steps, long stepStart) {
+        try {
+            List<String> missing = new ArrayList<>(names);
+            missing.removeAll(selectValues(names, false).keySet());
+            if (!missing.isEmpty()) {
+                insertRanges(missing, stepStart);
+            }
+            boolean autoCommit = connection.getAutoCommit();
+            boolean done = false;
+            connection.setAutoCommit(false);
+            try {
+                Map<String, Long> values = selectValues(names, true);
+                Map<String, SequenceRange> ranges = new HashMap<>(values.size() * 2);
+                PreparedStatement update = prepare(sql.getUpdateLockedRange());
+                try {
+                    for (Map.Entry<String, Long> entry : values.entrySet()) {
+                        long oldValue = entry.getValue();
+                        checkValue(oldValue);
+                        int step = steps.get(entry.getKey());
+                        update.setLong(1, oldValue + step);
+                        update.setString(2, entry.getKey());
+                        update.addBatch();
+                        ranges.put(entry.getKey(), new SequenceRange(oldValue + 1, oldValue + step));
+                    }
+                    if (!ranges.isEmpty()) {
+                        update.executeBatch();
+                    }
+                } finally {
+                    release(update);
+                }
+                connection.commit();
+                done = true;
+                return ranges;
+            } finally {
+                if (!done) {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            broken = true;
+            throw new SequenceException(e);
+        }
+    }
+
+    private Map<String, Long> selectValues(List<String> names, boolean forUpdate) throws SQLException {
+        PreparedStatement statement = prepare(sql.getSelectRanges(names.size(), forUpdate));
+        ResultSet resultSet = null;
+        try {
+            for (int i = 0; i < names.size(); i++) {
+                statement.setString(i + 1, names.get(i));
+            }
+            resultSet = statement.executeQuery();
+            Map<String, Long> values = new HashMap<>(names.size() * 2);
+            while (resultSet.next()) {
+                values.put(resultSet.getString(1), resultSet.getLong(2));
+            }
+            return values;
+        } finally {
+            AbstractDbHelper.close(resultSet);
+            release(statement);
+        }
+    }
+
+    private void insertRanges(List<String> names, long stepStart) {
+        PreparedStatement statement = null;
+        try {
+            statement = prepare(sql.getInsertRange());
+            for (String rangeName : names) {
+                statement.setString(1, rangeName);
+                statement.setLong(2, stepStart);
+                if (sql.isInsertBindsNameTwice()) {
+                    statement.setString(3, rangeName);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            release(statement);
+        }
+    }
+
+    /**
+     * 新增数据区间，区间已存在时由方言的SQL忽略，极少数并发新增的唯一键冲突也忽略
+     */
+    private void insertRange(String rangeName, long stepStart) {
+        PreparedStatement statement = null;
+        try {
+            statement = prepare(sql.getInsertRange());
+            statement.setString(1, rangeName);
+            statement.setLong(2, stepStart);
+            if (sql.isInsertBindsNameTwice()) {
+                statement.setString(3, rangeName);
+            }
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            release(statement);
+        }
+    }
+
+    /**
+     * 按旧值条件更新区间(CAS)
+     */
+    private boolean updateRange(String rangeName, long newValue, long oldValue) throws SQLException {
+        PreparedStatement statement = prepare(sql.getUpdateRange());
+        try {
+            statement.setLong(1, newValue);
+            statement.setString(2, rangeName);
+            statement.setLong(3, oldValue);
+            return statement.executeUpdate() > 0;
+        } finally {
+            release(statement);
+        }
+    }
+
+    /**
+     * 查询区间，如果区间不存在，会新增一个区间，并返回NOT_FOUND
+     */
+    private long selectRange(String rangeName, long stepStart) throws SQLException {
+        PreparedStatement statement = prepare(sql.getSelectRange());
+        ResultSet resultSet = null;
+        try {
+            statement.setString(1, rangeName);
+            resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                // 没有此类型数据，需要初始化
+                insertRange(rangeName, stepStart);
+                return NOT_FOUND;
+            }
+            long oldValue = resultSet.getLong(1);
+            checkValue(oldValue);
+            return oldValue;
+        } finally {
+            AbstractDbHelper.close(resultSet);
+            release(statement);
+        }
+    }
+
+    /**
+     * 用一条UPDATE语句原子地增加区间值。没有更新到数据时由selectRange区分区间不存在和值溢出
+     *
+     * @return 更新后的区间值，即新区间的最大值，没有更新到数据时返回NOT_FOUND
+     */
+    private long atomicRange(String rangeName, long stepStart, int step) throws SQLException {
+        DbDialect.UpdatedValue updatedValue = sql.getUpdatedValue();
+        PreparedStatement statement = updatedValue == DbDialect.UpdatedValue.OUT_PARAMETER
+            ? prepareCall(sql.getAtomicUpdate()) : prepare(sql.getAtomicUpdate());
+        ResultSet resultSet = null;
+        try {
+            statement.setLong(1, step);
+            statement.setString(2, rangeName);
+            statement.setLong(3, Long.MAX_VALUE - DELTA);
+            switch (updatedValue) {
+                case RESULT_SET:
+                    resultSet = statement.executeQuery();
+                    if (resultSet.next()) {
+                        return resultSet.getLong(1);
+                    }
+                    break;
+                case OUT_PARAMETER:
+                    CallableStatement call = (CallableStatement) statement;
+                    call.registerOutParameter(4, Types.BIGINT);
+                    call.execute();
+                    long value = call.getLong(4);
+                    if (!call.wasNull()) {
+                        return value;
+                    }
+                    break;
+                default:
+                    if (statement.executeUpdate() > 0) {
+                        // LAST_INSERT_ID()和会话变量按连接隔离，必须在同一个连接上读取
+                        return selectUpdated();
+                    }
+            }
+        } finally {
+            AbstractDbHelper.close(resultSet);
+            release(statement);
+        }
+        selectRange(rangeName, stepStart);
+        return NOT_FOUND;
+    }
+
+    private long selectUpdated() throws SQLException {
+        PreparedStatement statement = prepare(sql.getSelectUpdated());
+        ResultSet resultSet = null;
+        try {
+            resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                throw new SQLException("no value returned by " + sql.getSelectUpdated());
+            }
+            return resultSet.getLong(1);
+        } finally {
+            AbstractDbHelper.close(resultSet);
+            release(statement);
+        }
+    }
+
+    /**
+     * 在一个事务中锁住区间行并更新
+     *
+     * @return 更新前的区间值，区间不存在时新增并返回NOT_FOUND
+     */
+    private long lockRange(String rangeName, long stepStart, int step) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        boolean done = false;
+        connection.setAutoCommit(false);
+        try {
+            long oldValue = NOT_FOUND;
+            PreparedStatement select = prepare(sql.getSelectRangeForUpdate());
+            ResultSet resultSet = null;
+            try {
+                select.setString(1, rangeName);
+                resultSet = select.executeQuery();
+                if (resultSet.next()) {
+                    oldValue = resultSet.getLong(1);
+                }
+            } finally {
+                AbstractDbHelper.close(resultSet);
+                release(select);
+            }
+            if (NOT_FOUND == oldValue) {
+                connection.rollback();
+                done = true;
+                connection.setAutoCommit(autoCommit);
+                insertRange(rangeName, stepStart);
+                return NOT_FOUND;
+            }
+            checkValue(oldValue);
+            PreparedStatement update = prepare(sql.getUpdateLockedRange());
+            try {
+                update.setLong(1, oldValue + step);
+                update.setString(2, rangeName);
+                update.executeUpdate();
+            } finally {
+                release(update);
+            }
+            connection.commit();
+            done = true;
+            return oldValue;
+        } finally {
+            if (!done) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void checkValue(long oldValue) {
+        if (oldValue < 0) {
+            String msg = "Sequence value cannot be less than zero, value = " + oldValue
+                + ", please check table sequence" + sql.getTableName();
+            throw new SequenceException(msg);
+        }
+        if (oldValue > Long.MAX_VALUE - DELTA) {
+            String msg =
+                "Sequence value overflow, value = " + oldValue + ", please check table sequence" + sql.getTableName();
+            throw new SequenceException(msg);
+        }
+    }
+
+    private PreparedStatement prepare(String statementSql) throws SQLException {
+        if (null == statements) {
+            return connection.prepareStatement(statementSql);
+        }
+        PreparedStatement statement = statements.get(statementSql);
+        if (null == statement) {
+            statement = connection.prepareStatement(statementSql);
+            statements.put(statementSql, statement);
+        }
+        return statement;
+    }
+
+    private PreparedStatement prepareCall(String statementSql) throws SQLException {
+        if (null == statements) {
+            return connection.prepareCall(statementSql);
+        }
+        PreparedStatement statement = statements.get(statementSql);
+        if (null == statement) {
+            statement = connection.prepareCall(statementSql);
+            statements.put(statementSql, statement);
+        }
+        return statement;
+    }
+
+    private void release(PreparedStatement statement) {
+        if (null == statements) {
+            AbstractDbHelper.close(statement);
+        }
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    @Override
+    public void close() {
+        if (null != statements) {
+            for (PreparedStatement statement : statements.values()) {
+                AbstractDbHelper.close(statement);
+            }
+            statements.clear();
+        }
+        AbstractDbHelper.close(connection);
+    }
+}
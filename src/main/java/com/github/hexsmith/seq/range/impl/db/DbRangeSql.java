@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.db;
+
+/**
+ * 某张区间表的全部SQL，在初始化时按表名和方言生成一次，之后直接使用
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-28 09:30
+ */
+final class DbRangeSql {
+
+    /**
+     * 更新数据SQL
+     */
+    private static final String SQL_UPDATE_RANGE =
+        "UPDATE #tableName SET value=?,gmt_modified=CURRENT_TIMESTAMP WHERE name=? AND value=?";
+    /**
+     * 查询数据SQL
+     */
+    private static final String SQL_SELECT_RANGE = "SELECT value FROM #tableName WHERE name=?";
+    /**
+     * 加行锁查询数据SQL
+     */
+    private static final String SQL_SELECT_RANGE_FOR_UPDATE = "SELECT value FROM #tableName WHERE name=? FOR UPDATE";
+    /**
+     * 持有行锁时更新数据SQL
+     */
+    private static final String SQL_UPDATE_LOCKED_RANGE = "UPDATE #tableName SET value=?,gmt_modified=CURRENT_TIMESTAMP WHERE name=?";
+
+    private final String tableName;
+
+    private final String createTable;
+
+    private final String insertRange;
+
+    private final String updateRange;
+
+    private final String selectRange;
+
+    private final String selectRangeForUpdate;
+
+    private final String updateLockedRange;
+
+    private final String atomicUpdate;
+
+    private final String selectUpdated;
+
+    private final DbDialect.UpdatedValue updatedValue;
+
+    /**
+     * 新增SQL是否需要再绑定一次区间名
+     */
+    private final boolean insertBindsNameTwice;
+
+    DbRangeSql(String tableName, DbDialect dialect) {
+        this.tableName = tableName;
+        this.createTable = dialect.getCreateTableSql().replace("#tableName", tableName);
+        this.insertRange = dialect.getInsertRangeSql().replace("#tableName", tableName);
+        this.updateRange = SQL_UPDATE_RANGE.replace("#tableName", tableName);
+        this.selectRange = SQL_SELECT_RANGE.replace("#tableName", tableName);
+        this.selectRangeForUpdate = SQL_SELECT_RANGE_FOR_UPDATE.replace("#tableName", tableName);
+        this.updateLockedRange = SQL_UPDATE_LOCKED_RANGE.replace("#tableName", tableName);
+        this.atomicUpdate = dialect.getAtomicUpdateSql().replace("#tableName", tableName);
+        this.selectUpdated = dialect.getSelectUpdatedSql();
+        this.updatedValue = dialect.getUpdatedValue();
+        this.insertBindsNameTwice = countParameters(insertRange) > 2;
+    }
+
+    String getTableName() {
+        return tableName;
+    }
+
+    String getCreateTable() {
+        return createTable;
+    }
+
+    String getInsertRange() {
+        return insertRange;
+    }
+
+    String getUpdateRange() {
+        return updateRange;
+    }
+
+    String getSelectRange() {
+        return selectRange;
+    }
+
+    String getSelectRangeForUpdate() {
+        return selectRangeForUpdate;
+    }
+
+    String getUpdateLockedRange() {
+        return updateLockedRange;
+    }
+
+    String getAtomicUpdate() {
+        return atomicUpdate;
+    }
+
+    String getSelectUpdated() {
+        return selectUpdated;
+    }
+
+    DbDialect.UpdatedValue getUpdatedValue() {
+        return updatedValue;
+    }
+
+    boolean isInsertBindsNameTwice() {
+        return insertBindsNameTwice;
+    }
+
+    /**
+     * 按区间名批量查询的SQL，IN列表长度随调用变化，只在预热等低频场景使用
+     *
+     * @param count     区间名个数
+     * @param forUpdate 是否加行锁
+     * @return SQL
+     */
+    String getSelectRanges(int count, boolean forUpdate) {
+        StringBuilder builder = new StringBuilder("SELECT name,value FROM ").append(tableName).append(" WHERE name IN (");
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        builder.append(')');
+        if (forUpdate) {
+            builder.append(" FOR UPDATE");
+        }
+        return builder.toString();
+    }
+
+    private static int countParameters(String statementSql) {
+        int count = 0;
+        for (int i = 0; i < statementSql.length(); i++) {
+            if (statementSql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
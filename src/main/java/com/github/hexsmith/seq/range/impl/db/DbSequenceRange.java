@@ -18,6 +18,25 @@ package com.github.hexsmith.seq.range.impl.db;
 import com.github.hexsmith.seq.exception.SequenceException;
 import com.github.hexsmith.seq.range.SequenceRange;
 import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.range.retry.FixedRetryPolicy;
+import com.github.hexsmith.seq.range.retry.RetryPolicy;
+import com.github.hexsmith.seq.range.step.StepPolicy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.sql.DataSource;
 
@@ -35,6 +54,11 @@ public class DbSequenceRange implements SequenceRangeManager {
      */
     private final static String TABLE_NAME_PREFIX = "sequence_";
 
+    /**
+     * 批量获取区间时每个事务的区间名个数，同时受限于IN列表长度(Oracle最多1000)
+     */
+    private final static int BATCH_SIZE = 500;
+
     /**
      * 区间步长
      */
@@ -44,9 +68,17 @@ public class DbSequenceRange implements SequenceRangeManager {
      */
     private long stepStart  = 0;
     /**
-     * 获取区间失败重试次数
+     * 获取区间失败重试次数，没有设置retryPolicy时生效
      */
     private int  retryTimes = 100;
+    /**
+     * 乐观更新冲突时的重试策略，例如DecorrelatedJitterRetryPolicy，为空时立即重试retryTimes次
+     */
+    private RetryPolicy retryPolicy;
+    /**
+     * 是否合并本地的并发请求：同一个区间名同一时刻只有一个线程访问DB，其它线程在本地排队，不在DB上制造冲突
+     */
+    private boolean coalesce = true;
     /**
      * DB来源
      */
@@ -55,6 +87,56 @@ public class DbSequenceRange implements SequenceRangeManager {
      * 表名，默认range
      */
     private String tableName = "range";
+    /**
+     * 步长策略，为空时固定使用rangeStep
+     */
+    private StepPolicy stepPolicy;
+    /**
+     * 区间分配方式，默认先查询再CAS更新
+     */
+    private DbAllocationMode allocationMode = DbAllocationMode.OPTIMISTIC;
+    /**
+     * 数据库方言，决定建表、新增区间和原子更新的SQL
+     */
+    private DbDialect dialect = DbDialect.MYSQL;
+    /**
+     * 使用专用连接的区间名，适合取区间频率很高的业务，专用连接缓存PreparedStatement，不占用连接池
+     */
+    private Set<String> dedicatedNames = Collections.emptySet();
+    /**
+     * 初始化时按表名和方言生成的SQL
+     */
+    private DbRangeSql sql;
+    /**
+     * 专用连接上的会话，由dedicatedLock保护
+     */
+    private DbRangeSession dedicatedSession;
+
+    private final Object dedicatedLock = new Object();
+    /**
+     * 初始化时确定的重试策略
+     */
+    private RetryPolicy effectiveRetryPolicy;
+    /**
+     * 每个区间名的本地锁
+     */
+    private final ConcurrentMap<String, ReentrantLock> nameLocks = new ConcurrentHashMap<>();
+    /**
+     * 乐观更新失败(包括区间不存在时新增后的重试)的次数
+     */
+    private final LongAdder casFailureCount = new LongAdder();
+    /**
+     * 超出重试策略后放弃的次数
+     */
+    private final LongAdder giveUpCount = new LongAdder();
+    /**
+     * 重试退避等待的总时长(纳秒)
+     */
+    private final LongAdder backoffNanos = new LongAdder();
+    /**
+     * 在本地锁上排队等待的总时长(纳秒)
+     */
+    private final LongAdder coalesceWaitNanos = new LongAdder();
 
 
     /**
@@ -69,21 +151,130 @@ public class DbSequenceRange implements SequenceRangeManager {
         if (isEmpty(rangeName)) {
             throw new SecurityException("[DbSeqRangeMgr-nextRange] name is empty.");
         }
-        Long oldValue;
-        Long newValue;
-        for (int i = 0; i < getRetryTimes(); i++) {
-            oldValue = AbstractDbHelper.selectRange(getDataSource(), getRealTableName(), rangeName, getStepStart());
-            if (null == oldValue) {
-                // 区间不存在，重试
-                continue;
+        if (!coalesce) {
+            return allocate(rangeName);
+        }
+        ReentrantLock lock = nameLocks.computeIfAbsent(rangeName, name -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            long begin = System.nanoTime();
+            lock.lock();
+            coalesceWaitNanos.add(System.nanoTime() - begin);
+        }
+        try {
+            return allocate(rangeName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按重试策略获取区间，冲突时退避后重试
+     */
+    private SequenceRange allocate(String rangeName) {
+        int step = getStep(rangeName);
+        boolean dedicated = dedicatedNames.contains(rangeName);
+        long begin = System.currentTimeMillis();
+        long delay = 0;
+        for (int attempt = 1; ; attempt++) {
+            SequenceRange range = dedicated ? dedicatedRange(rangeName, step)
+                : AbstractDbHelper.nextRange(getDataSource(), sql, allocationMode, rangeName, getStepStart(), step);
+            if (null != range) {
+                return range;
+            }
+            // 区间不存在或乐观更新失败，按策略重试
+            casFailureCount.increment();
+            long elapsed = System.currentTimeMillis() - begin;
+            delay = effectiveRetryPolicy.nextDelayMillis(attempt, delay, elapsed);
+            if (delay < 0) {
+                giveUpCount.increment();
+                throw new SequenceException("Retried too many times, attempts = " + attempt + ", elapsedMillis = " + elapsed);
+            }
+            if (delay > 0) {
+                long sleepBegin = System.nanoTime();
+                sleep(delay);
+                backoffNanos.add(System.nanoTime() - sleepBegin);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SequenceException(e);
+        }
+    }
+
+    /**
+     * 批量获取区间，按区间名排序后每BATCH_SIZE个一个事务，只需要固定几次往返。
+     * 排序只决定加锁顺序，返回结果与其它实现一样按传入的顺序排列
+     *
+     * @param names 区间名
+     * @return 区间名到区间的映射，按传入的顺序
+     * @throws SequenceException 异常
+     */
+    @Override
+    public Map<String, SequenceRange> nextRanges(Collection<String> names) throws SequenceException {
+        TreeSet<String> sortedNames = new TreeSet<>();
+        for (String name : names) {
+            if (isEmpty(name)) {
+                throw new SecurityException("[DbSeqRangeMgr-nextRanges] name is empty.");
+            }
+            sortedNames.add(name);
+        }
+        List<String> all = new ArrayList<>(sortedNames);
+        Map<String, SequenceRange> ranges = new HashMap<>(all.size() * 2);
+        for (int from = 0; from < all.size(); from += BATCH_SIZE) {
+            List<String> batch = all.subList(from, Math.min(all.size(), from + BATCH_SIZE));
+            Map<String, Integer> steps = new HashMap<>(batch.size() * 2);
+            for (String name : batch) {
+                steps.put(name, getStep(name));
+            }
+            ranges.putAll(AbstractDbHelper.nextRanges(getDataSource(), sql, batch, steps, getStepStart()));
+        }
+        for (String name : all) {
+            if (!ranges.containsKey(name)) {
+                // 批量新增失败的区间名单独获取
+                ranges.put(name, nextRange(name));
+            }
+        }
+        Map<String, SequenceRange> ordered = new LinkedHashMap<>(ranges.size() * 2);
+        for (String name : names) {
+            ordered.put(name, ranges.get(name));
+        }
+        return ordered;
+    }
+
+    /**
+     * 在专用连接上分配区间，连接出错后丢弃，下一次重新打开
+     */
+    private SequenceRange dedicatedRange(String rangeName, int step) {
+        synchronized (dedicatedLock) {
+            if (null == dedicatedSession) {
+                dedicatedSession = AbstractDbHelper.openSession(getDataSource(), sql, true);
             }
-            newValue = oldValue + getRangeStep();
-            if (AbstractDbHelper.updateRange(getDataSource(), getRealTableName(), rangeName, newValue, oldValue)) {
-                return new SequenceRange(oldValue + 1, newValue);
+            try {
+                return dedicatedSession.nextRange(allocationMode, rangeName, getStepStart(), step);
+            } finally {
+                if (dedicatedSession.isBroken()) {
+                    dedicatedSession.close();
+                    dedicatedSession = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 关闭专用连接
+     */
+    public void close() {
+        synchronized (dedicatedLock) {
+            if (null != dedicatedSession) {
+                dedicatedSession.close();
+                dedicatedSession = null;
             }
-            //else 失败重试
         }
-        throw new SequenceException("Retried too many times, retryTimes = " + getRetryTimes());
     }
 
     /**
@@ -92,7 +283,13 @@ public class DbSequenceRange implements SequenceRangeManager {
     @Override
     public void init() {
         checkParam();
-        AbstractDbHelper.creatTable(getDataSource(), getRealTableName());
+        effectiveRetryPolicy = null != retryPolicy ? retryPolicy : new FixedRetryPolicy(retryTimes);
+        sql = new DbRangeSql(getRealTableName(), dialect);
+        AbstractDbHelper.creatTable(getDataSource(), sql);
+    }
+
+    private int getStep(String rangeName) {
+        return null == stepPolicy ? getRangeStep() : stepPolicy.nextStep(rangeName);
     }
 
     private boolean isEmpty(String str) {
@@ -116,6 +313,12 @@ public class DbSequenceRange implements SequenceRangeManager {
         if (null == dataSource) {
             throw new SecurityException("[DbSequenceRange-setDataSource] dataSource is null.");
         }
+        if (null == allocationMode) {
+            throw new SecurityException("[DbSequenceRange-setAllocationMode] allocationMode is null.");
+        }
+        if (null == dialect) {
+            throw new SecurityException("[DbSequenceRange-setDialect] dialect is null.");
+        }
         if (isEmpty(tableName)) {
             throw new SecurityException("[DbSequenceRange-setTableName] tableName is empty.");
         }
@@ -145,6 +348,58 @@ public class DbSequenceRange implements SequenceRangeManager {
         this.retryTimes = retryTimes;
     }
 
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    /**
+     * 乐观更新失败的次数，包括区间不存在时新增后的那一次重试
+     *
+     * @return 失败次数
+     */
+    public long getCasFailureCount() {
+        return casFailureCount.sum();
+    }
+
+    /**
+     * 超出重试策略后放弃(抛出异常)的次数
+     *
+     * @return 放弃次数
+     */
+    public long getGiveUpCount() {
+        return giveUpCount.sum();
+    }
+
+    /**
+     * 重试退避等待的总时长
+     *
+     * @return 毫秒
+     */
+    public long getBackoffMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(backoffNanos.sum());
+    }
+
+    /**
+     * 同一区间名的本地并发请求排队等待的总时长
+     *
+     * @return 毫秒
+     */
+    public long getCoalesceWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(coalesceWaitNanos.sum());
+    }
+
     public DataSource getDataSource() {
         return dataSource;
     }
@@ -160,4 +415,37 @@ public class DbSequenceRange implements SequenceRangeManager {
     public void setTableName(String tableName) {
         this.tableName = tableName;
     }
+
+    public StepPolicy getStepPolicy() {
+        return stepPolicy;
+    }
+
+    public void setStepPolicy(StepPolicy stepPolicy) {
+        this.stepPolicy = stepPolicy;
+    }
+
+    public DbAllocationMode getAllocationMode() {
+        return allocationMode;
+    }
+
+    public void setAllocationMode(DbAllocationMode allocationMode) {
+        this.allocationMode = allocationMode;
+    }
+
+    public DbDialect getDialect() {
+        return dialect;
+    }
+
+    public void setDialect(DbDialect dialect) {
+        this.dialect = dialect;
+    }
+
+    public Set<String> getDedicatedNames() {
+        return dedicatedNames;
+    }
+
+    public void setDedicatedNames(Set<String> dedicatedNames) {
+        this.dedicatedNames = null == dedicatedNames ? Collections.<String>emptySet()
+            : Collections.unmodifiableSet(new HashSet<>(dedicatedNames));
+    }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.failover;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个后端的熔断器
+ * <br>
+ * 连续失败failureThreshold次后打开，打开期间直接跳过该后端；经过openMillis后放行一个探测请求(半开)，
+ * 探测成功则关闭，失败则重新打开。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-04 10:00
+ */
+final class CircuitBreaker {
+
+    static final int CLOSED = 0;
+
+    static final int OPEN = 1;
+
+    static final int HALF_OPEN = 2;
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private volatile long openUntil;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 是否允许请求该后端，打开时间已到时只有一个线程能拿到探测机会。
+     * 放行后调用方必须记录成功或失败(包括Error)，否则熔断器停留在半开状态，不再放行任何请求
+     *
+     * @return 是否允许
+     */
+    boolean allowRequest() {
+        int current = state.get();
+        if (current == CLOSED) {
+            return true;
+        }
+        return current == OPEN && System.currentTimeMillis() >= openUntil && state.compareAndSet(OPEN, HALF_OPEN);
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+        state.set(CLOSED);
+    }
+
+    void recordFailure() {
+        if (state.get() == HALF_OPEN || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil = System.currentTimeMillis() + openMillis;
+            state.set(OPEN);
+        }
+    }
+
+    int getState() {
+        return state.get();
+    }
+}
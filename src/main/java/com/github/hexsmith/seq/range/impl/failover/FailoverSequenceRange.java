@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.failover;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.range.ValueSpacePartition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多后端故障转移区间管理器
+ * <br>
+ * backends[0]为主后端，其余为备用后端，第i个后端的区间平移到值空间分区[i * partitionSize, (i + 1) * partitionSize)，
+ * 主后端偏移为0，原有数据不受影响。不同后端的序列号互不重叠，任意切换都不会产生重复，
+ * 但切换到备用后端后序列号不再递增。每个后端的值(包括分片后的值)必须小于partitionSize，
+ * 超出分区的区间按该后端失败处理，计入熔断器并尝试下一个后端，超出的区间成为空洞。
+ * <br>
+ * 每个后端有一个熔断器：连续失败后跳过该后端，一段时间后放行一个请求探测，主后端恢复后自动切回。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-04 11:00
+ */
+public class FailoverSequenceRange implements SequenceRangeManager {
+
+    /**
+     * 后端，第一个为主后端[必选]
+     */
+    private List<SequenceRangeManager> backends = new ArrayList<>();
+
+    /**
+     * 每个后端的值空间大小[可选，默认：2^56]
+     */
+    private long partitionSize = 1L << 56;
+
+    /**
+     * 连续失败多少次后打开熔断器[可选，默认：3]
+     */
+    private int failureThreshold = 3;
+
+    /**
+     * 熔断器打开后多久放行一个探测请求(毫秒)[可选，默认：5000]
+     */
+    private long openMillis = 5000;
+
+    private ValueSpacePartition[] partitions;
+
+    private CircuitBreaker[] breakers;
+
+    private LongAdder[] successCounts;
+
+    private LongAdder[] failureCounts;
+
+    /**
+     * 由备用后端分配的区间数
+     */
+    private final LongAdder failoverCount = new LongAdder();
+
+    /**
+     * 获取指定区间名的下一个区间，按顺序使用第一个可用的后端
+     *
+     * @param name 区间名
+     * @return 返回区间
+     * @throws SequenceException 所有后端都不可用
+     */
+    @Override
+    public SequenceRange nextRange(String name) throws SequenceException {
+        RuntimeException last = null;
+        for (int i = 0; i < breakers.length; i++) {
+            if (!breakers[i].allowRequest()) {
+                continue;
+            }
+            SequenceRange range;
+            boolean succeeded = false;
+            try {
+                range = partitions[i].translate(backends.get(i).nextRange(name));
+                succeeded = true;
+            } catch (RuntimeException e) {
+                last = e;
+                continue;
+            } finally {
+                // Error等其它异常同样记为失败，否则半开的熔断器永远不会再放行
+                if (!succeeded) {
+                    onFailure(i);
+                }
+            }
+            onSuccess(i);
+            return range;
+        }
+        throw new SequenceException("[FailoverSequenceRange-nextRange] no backend available, name = " + name, last);
+    }
+
+    /**
+     * 批量获取区间，由第一个可用的后端一次完成
+     *
+     * @param names 区间名
+     * @return 区间名到区间的映射
+     * @throws SequenceException 所有后端都不可用
+     */
+    @Override
+    public Map<String, SequenceRange> nextRanges(Collection<String> names) throws SequenceException {
+        RuntimeException last = null;
+        for (int i = 0; i < breakers.length; i++) {
+            if (!breakers[i].allowRequest()) {
+                continue;
+            }
+            Map<String, SequenceRange> ranges = new LinkedHashMap<>();
+            boolean succeeded = false;
+            try {
+                for (Map.Entry<String, SequenceRange> entry : backends.get(i).nextRanges(names).entrySet()) {
+                    ranges.put(entry.getKey(), partitions[i].translate(entry.getValue()));
+                }
+                succeeded = true;
+            } catch (RuntimeException e) {
+                last = e;
+                continue;
+            } finally {
+                if (!succeeded) {
+                    onFailure(i);
+                }
+            }
+            onSuccess(i);
+            return ranges;
+        }
+        throw new SequenceException("[FailoverSequenceRange-nextRanges] no backend available.", last);
+    }
+
+    private void onSuccess(int backend) {
+        breakers[backend].recordSuccess();
+        successCounts[backend].increment();
+        if (backend > 0) {
+            failoverCount.increment();
+        }
+    }
+
+    private void onFailure(int backend) {
+        breakers[backend].recordFailure();
+        failureCounts[backend].increment();
+    }
+
+    /**
+     * 初始化所有后端
+     */
+    @Override
+    public void init() {
+        checkParam();
+        int size = backends.size();
+        partitions = new ValueSpacePartition[size];
+        breakers = new CircuitBreaker[size];
+        successCounts = new LongAdder[size];
+        failureCounts = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            partitions[i] = ValueSpacePartition.of(i, partitionSize);
+            breakers[i] = new CircuitBreaker(failureThreshold, openMillis);
+            successCounts[i] = new LongAdder();
+            failureCounts[i] = new LongAdder();
+            backends.get(i).init();
+        }
+    }
+
+    private void checkParam() {
+        if (null == backends || backends.isEmpty()) {
+            throw new SecurityException("[FailoverSequenceRange-checkParam] backends is empty.");
+        }
+        for (SequenceRangeManager backend : backends) {
+            if (null == backend) {
+                throw new SecurityException("[FailoverSequenceRange-checkParam] backend is null.");
+            }
+        }
+        if (partitionSize <= 0 || partitionSize > Long.MAX_VALUE / backends.size()) {
+            throw new SecurityException(
+                "[FailoverSequenceRange-checkParam] backends * partitionSize exceeds Long.MAX_VALUE.");
+        }
+        if (failureThreshold <= 0) {
+            throw new SecurityException("[FailoverSequenceRange-checkParam] failureThreshold must greater than 0.");
+        }
+        if (openMillis < 0) {
+            throw new SecurityException("[FailoverSequenceRange-checkParam] openMillis < 0.");
+        }
+    }
+
+    /**
+     * 第backend个后端成功分配的区间数
+     *
+     * @param backend 后端下标
+     * @return 区间数
+     */
+    public long getSuccessCount(int backend) {
+        return successCounts[backend].sum();
+    }
+
+    /**
+     * 第backend个后端分配失败的次数
+     *
+     * @param backend 后端下标
+     * @return 失败次数
+     */
+    public long getFailureCount(int backend) {
+        return failureCounts[backend].sum();
+    }
+
+    /**
+     * 第backend个后端的熔断器是否处于打开或半开状态
+     *
+     * @param backend 后端下标
+     * @return 是否熔断
+     */
+    public boolean isOpen(int backend) {
+        return breakers[backend].getState() != CircuitBreaker.CLOSED;
+    }
+
+    /**
+     * 由备用后端分配的区间数
+     *
+     * @return 区间数
+     */
+    public long getFailoverCount() {
+        return failoverCount.sum();
+    }
+
+    public List<SequenceRangeManager> getBackends() {
+        return backends;
+    }
+
+    public void setBackends(List<SequenceRangeManager> backends) {
+        this.backends = backends;
+    }
+
+    public long getPartitionSize() {
+        return partitionSize;
+    }
+
+    public void setPartitionSize(long partitionSize) {
+        this.partitionSize = partitionSize;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+}
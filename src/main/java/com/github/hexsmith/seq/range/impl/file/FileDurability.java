@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.file;
+
+/**
+ * 文件区间管理器的持久化方式
+ * <br>
+ * 两种方式下进程崩溃都不会重复发放：写入内存映射文件的数据在操作系统页缓存中，其它进程和重启后的进程都能读到。
+ * 区别只在操作系统崩溃或掉电时
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-06 10:00
+ */
+public enum FileDurability {
+
+    /**
+     * 每分配一个区间刷一次盘，掉电也不会重复发放，分配区间的耗时取决于磁盘fsync
+     */
+    FORCE_PER_RANGE,
+
+    /**
+     * 后台定期刷盘，分配区间只是内存操作；掉电时最近一个刷盘周期内分配的区间可能丢失，重启后会重复发放
+     */
+    PERIODIC
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.file;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.range.step.StepPolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于内存映射文件的区间管理器，适合没有DB和redis的单机服务
+ * <br>
+ * 文件由64字节的文件头和capacity个64字节的槽组成，每个区间名占用一个槽，槽中保存区间名和已经分配出去的最大值。
+ * 区间名按hash开放寻址放入槽中，槽一旦分配不再移动。
+ * <ul>
+ * <li>同一台机器上的多个进程可以共用一个文件：分配槽时锁住文件头，分配区间时只锁住对应的槽(FileChannel区域锁)</li>
+ * <li>文件锁属于进程，同一个进程的多个线程同时持有或等待不同区域的锁会被内核误判为死锁(EDEADLK)，
+ * 因此进程内再用一个锁保证同一时刻只有一个线程持有文件锁。锁内只有几次内存读写，刷盘在锁外进行</li>
+ * <li>持久化方式见{@link FileDurability}</li>
+ * </ul>
+ * 同一个JVM中一个文件只能由一个FileSequenceRange打开
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-06 10:30
+ */
+public class FileSequenceRange implements SequenceRangeManager {
+
+    private static final int MAGIC = 0x53514652;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final int SLOT_SIZE = 64;
+
+    private static final int OFFSET_MAGIC = 0;
+
+    private static final int OFFSET_VERSION = 4;
+
+    private static final int OFFSET_CAPACITY = 8;
+
+    private static final int OFFSET_NAME = 4;
+
+    /**
+     * 区间名UTF-8编码后的最大字节数
+     */
+    public static final int MAX_NAME_LENGTH = 48;
+
+    private static final int OFFSET_VALUE = 56;
+
+    /**
+     * 当前JVM中已经打开的文件
+     */
+    private static final Set<String> OPEN_FILES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 文件路径[必选]
+     */
+    private String path;
+    /**
+     * 区间步长
+     */
+    private int step = 1000;
+    /**
+     * 区间起始位置，真实从stepStart+1开始
+     */
+    private long stepStart = 0;
+    /**
+     * 步长策略，为空时固定使用step
+     */
+    private StepPolicy stepPolicy;
+    /**
+     * 新建文件时的槽个数，即最多支持的区间名个数；打开已有文件时以文件中的为准
+     */
+    private int capacity = 1024;
+    /**
+     * 持久化方式
+     */
+    private FileDurability durability = FileDurability.FORCE_PER_RANGE;
+    /**
+     * PERIODIC方式的刷盘间隔(毫秒)
+     */
+    private long forceIntervalMillis = 1000;
+
+    private String canonicalPath;
+
+    private RandomAccessFile raf;
+
+    private FileChannel channel;
+
+    /**
+     * 映射的文件内容，关闭后为空；只在持有进程内的锁时读取并判断是否已关闭
+     */
+    private volatile MappedByteBuffer buffer;
+
+    /**
+     * 文件中的槽个数
+     */
+    private int slotCount;
+
+    /**
+     * 进程内的锁，持有它才能获取文件锁
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 区间名到槽下标的缓存
+     */
+    private final ConcurrentMap<String, Integer> slots = new ConcurrentHashMap<>();
+
+    /**
+     * 上次刷盘后是否分配过区间
+     */
+    private volatile boolean dirty;
+
+    private ScheduledExecutorService forceExecutor;
+
+    /**
+     * 获取指定区间名的下一个区间
+     *
+     * @param name 区间名
+     * @return 返回区间
+     * @throws SequenceException 异常
+     */
+    @Override
+    public SequenceRange nextRange(String name) throws SequenceException {
+        if (null == name || name.trim().length() == 0) {
+            throw new SecurityException("[FileSequenceRange-nextRange] name is empty.");
+        }
+        int step = getStep(name);
+        int slot = slotOf(name);
+        int position = HEADER_SIZE + slot * SLOT_SIZE;
+        MappedByteBuffer mapped;
+        long current;
+        synchronized (lock) {
+            mapped = openedBuffer();
+            FileLock fileLock = lock(position, SLOT_SIZE);
+            try {
+                current = mapped.getLong(position + OFFSET_VALUE);
+                if (current > Long.MAX_VALUE - step) {
+                    throw new SequenceException("Sequence value overflow, value = " + current);
+                }
+                mapped.putLong(position + OFFSET_VALUE, current + step);
+            } finally {
+                release(fileLock);
+            }
+        }
+        // 写入页缓存后其它进程已经可见，刷盘完成前不返回区间；关闭文件不会解除映射，这里刷盘仍然有效
+        if (durability == FileDurability.FORCE_PER_RANGE) {
+            mapped.force();
+        } else {
+            dirty = true;
+        }
+        return new SequenceRange(current + 1, current + step);
+    }
+
+    /**
+     * 初始化，打开或创建文件
+     */
+    @Override
+    public void init() {
+        checkParam();
+        File file = new File(path);
+        String realPath;
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (null != parent && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+                throw new SequenceException("[FileSequenceRange-init] can not create directory " + parent);
+            }
+            realPath = file.getCanonicalPath();
+        } catch (IOException e) {
+            throw new SequenceException("[FileSequenceRange-init] invalid path " + path, e);
+        }
+        if (!OPEN_FILES.add(realPath)) {
+            throw new SecurityException("[FileSequenceRange-init] file is already opened in this JVM: " + realPath);
+        }
+        canonicalPath = realPath;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            FileLock fileLock = lock(0, HEADER_SIZE);
+            try {
+                if (channel.size() == 0) {
+                    slotCount = capacity;
+                    raf.setLength(HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+                    buffer.putInt(OFFSET_CAPACITY, slotCount);
+                    buffer.putInt(OFFSET_VERSION, VERSION);
+                    buffer.putInt(OFFSET_MAGIC, MAGIC);
+                    buffer.force();
+                } else {
+                    buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                    if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION) {
+                        throw new SequenceException("[FileSequenceRange-init] not a sequence file: " + canonicalPath);
+                    }
+                    slotCount = buffer.getInt(OFFSET_CAPACITY);
+                    if (slotCount <= 0 || channel.size() < HEADER_SIZE + (long) slotCount * SLOT_SIZE) {
+                        throw new SequenceException("[FileSequenceRange-init] corrupted sequence file: " + canonicalPath);
+                    }
+                }
+            } finally {
+                release(fileLock);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new SequenceException("[FileSequenceRange-init] open file failed: " + canonicalPath, e);
+        }
+        if (durability == FileDurability.PERIODIC) {
+            forceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "sequence-file-force");
+                thread.setDaemon(true);
+                return thread;
+            });
+            forceExecutor.scheduleWithFixedDelay(this::forceIfDirty, forceIntervalMillis, forceIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 刷盘并关闭文件，与分配区间互斥，关闭后的调用抛出SequenceException
+     */
+    public void close() {
+        if (null != forceExecutor) {
+            forceExecutor.shutdown();
+            forceExecutor = null;
+        }
+        synchronized (lock) {
+            if (null != buffer) {
+                buffer.force();
+                buffer = null;
+            }
+            if (null != raf) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                raf = null;
+                channel = null;
+            }
+            if (null != canonicalPath) {
+                OPEN_FILES.remove(canonicalPath);
+                canonicalPath = null;
+            }
+        }
+    }
+
+    /**
+     * 持有进程内的锁时调用
+     *
+     * @return 映射的文件内容
+     * @throws SequenceException 文件没有打开或已经关闭
+     */
+    private MappedByteBuffer openedBuffer() {
+        MappedByteBuffer current = buffer;
+        if (null == current) {
+            throw new SequenceException("[FileSequenceRange-nextRange] file is not opened or already closed.");
+        }
+        return current;
+    }
+
+    /**
+     * 查找区间名所在的槽，不存在时在文件头锁的保护下分配一个
+     *
+     * @param name 区间名
+     * @return 槽下标
+     */
+    private int slotOf(String name) {
+        Integer cached = slots.get(name);
+        if (null != cached) {
+            return cached;
+        }
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_LENGTH) {
+            throw new SequenceException("[FileSequenceRange-slotOf] name is longer than " + MAX_NAME_LENGTH + " bytes: " + name);
+        }
+        int found = -1;
+        boolean created = false;
+        MappedByteBuffer mapped;
+        synchronized (lock) {
+            mapped = openedBuffer();
+            FileLock fileLock = lock(0, HEADER_SIZE);
+            try {
+                int start = (name.hashCode() & Integer.MAX_VALUE) % slotCount;
+                for (int i = 0; i < slotCount; i++) {
+                    int slot = (start + i) % slotCount;
+                    int position = HEADER_SIZE + slot * SLOT_SIZE;
+                    int length = mapped.getInt(position);
+                    if (length == 0) {
+                        for (int j = 0; j < bytes.length; j++) {
+                            mapped.put(position + OFFSET_NAME + j, bytes[j]);
+                        }
+                        mapped.putLong(position + OFFSET_VALUE, stepStart);
+                        // 最后写入长度，长度非0的槽才算分配完成
+                        mapped.putInt(position, bytes.length);
+                        found = slot;
+                        created = true;
+                        break;
+                    }
+                    if (length == bytes.length && nameEquals(mapped, position, bytes)) {
+                        found = slot;
+                        break;
+                    }
+                }
+            } finally {
+                release(fileLock);
+            }
+        }
+        if (found >= 0) {
+            if (created && durability == FileDurability.FORCE_PER_RANGE) {
+                mapped.force();
+            }
+            slots.put(name, found);
+            return found;
+        }
+        throw new SequenceException("[FileSequenceRange-slotOf] no free slot, capacity = " + slotCount);
+    }
+
+    private boolean nameEquals(MappedByteBuffer mapped, int position, byte[] bytes) {
+        for (int j = 0; j < bytes.length; j++) {
+            if (mapped.get(position + OFFSET_NAME + j) != bytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private FileLock lock(long position, long size) {
+        try {
+            return channel.lock(position, size, false);
+        } catch (IOException e) {
+            throw new SequenceException("[FileSequenceRange-lock] lock file failed: " + canonicalPath, e);
+        }
+    }
+
+    private void release(FileLock lock) {
+        try {
+            lock.release();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void forceIfDirty() {
+        if (dirty) {
+            dirty = false;
+            MappedByteBuffer current = buffer;
+            if (null != current) {
+                current.force();
+            }
+        }
+    }
+
+    private int getStep(String name) {
+        return null == stepPolicy ? getStep() : stepPolicy.nextStep(name);
+    }
+
+    private void checkParam() {
+        if (null == path || path.trim().length() == 0) {
+            throw new SecurityException("[FileSequenceRange-setPath] path is empty.");
+        }
+        if (step <= 0) {
+            throw new SecurityException("[FileSequenceRange-checkParam] step must greater than 0.");
+        }
+        if (stepStart < 0) {
+            throw new SecurityException("[FileSequenceRange-setStepStart] stepStart < 0.");
+        }
+        if (capacity <= 0) {
+            throw new SecurityException("[FileSequenceRange-setCapacity] capacity must greater than 0.");
+        }
+        if (null == durability) {
+            throw new SecurityException("[FileSequenceRange-setDurability] durability is null.");
+        }
+        if (forceIntervalMillis <= 0) {
+            throw new SecurityException("[FileSequenceRange-setForceIntervalMillis] forceIntervalMillis must greater than 0.");
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public void setStep(int step) {
+        this.step = step;
+    }
+
+    public long getStepStart() {
+        return stepStart;
+    }
+
+    public void setStepStart(long stepStart) {
+        this.stepStart = stepStart;
+    }
+
+    public StepPolicy getStepPolicy() {
+        return stepPolicy;
+    }
+
+    public void setStepPolicy(StepPolicy stepPolicy) {
+        this.stepPolicy = stepPolicy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public FileDurability getDurability() {
+        return durability;
+    }
+
+    public void setDurability(FileDurability durability) {
+        this.durability = durability;
+    }
+
+    public long getForceIntervalMillis() {
+        return forceIntervalMillis;
+    }
+
+    public void setForceIntervalMillis(long forceIntervalMillis) {
+        this.forceIntervalMillis = forceIntervalMillis;
+    }
+}
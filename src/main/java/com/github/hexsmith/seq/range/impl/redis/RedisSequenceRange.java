@@ -18,11 +18,37 @@ package com.github.hexsmith.seq.range.impl.redis;
 import com.github.hexsmith.seq.exception.SequenceException;
 import com.github.hexsmith.seq.range.SequenceRange;
 import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.range.step.StepPolicy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
 
 /**
  * Redis区间管理器
+ * <br>
+ * 基于JedisPool，可以被多个区间名安全地共享。同一时刻到达的多个区间请求合并后，
+ * 通过pipeline在一次往返中完成所有INCRBY，最多maxTotal个线程同时提交，每个线程占用一个连接；连接异常时按指数退避重试，重试次数有上限。
+ * <br>
+ * 开启useScript后改为执行Lua脚本，在一次原子调用中完成初始值设置、按区间名读取步长、上限检查，
+ * 与DB区间管理器的stepStart和溢出检查保持一致。
  *
  * @author yuzp
  * @version V1.0
@@ -36,9 +62,46 @@ public class RedisSequenceRange implements SequenceRangeManager {
     private static final String KEY_PREFIX = "sequence_";
 
     /**
-     * redis客户端
+     * 按区间名配置步长的hash，不能放在KEY_PREFIX下，否则会与名为step的区间的key冲突
+     */
+    private static final String STEP_KEY = "sequence:config:step";
+
+    /**
+     * Lua脚本中的数值是双精度浮点数，脚本模式下的值不能超过2^53-1
+     */
+    public static final long MAX_SCRIPT_VALUE = (1L << 53) - 1;
+
+    /**
+     * 分配区间的脚本，KEYS: 值, 步长hash；ARGV: 初始值, 默认步长, 最大值, 区间名。
+     * 返回{min, max}，超过最大值时返回{-1, 当前值}且不修改当前值
+     */
+    private static final String SCRIPT_NEXT_RANGE =
+        "if redis.call('exists', KEYS[1]) == 0 then redis.call('set', KEYS[1], ARGV[1]) end\n"
+            + "local step = tonumber(redis.call('hget', KEYS[2], ARGV[4]) or ARGV[2])\n"
+            + "local current = tonumber(redis.call('get', KEYS[1]))\n"
+            + "if current > tonumber(ARGV[3]) - step then return {-1, current} end\n"
+            + "local max = redis.call('incrby', KEYS[1], step)\n"
+            + "return {max - step + 1, max}";
+
+    /**
+     * 一次pipeline最多合并的请求数
+     */
+    private static final int MAX_BATCH_SIZE = 128;
+
+    /**
+     * 等待其它线程合并提交时每次等待的时长(毫秒)，超时后尝试自己提交
+     */
+    private static final long BATCH_WAIT_MILLIS = 1L;
+
+    /**
+     * redis连接池，可以由外部传入与其它组件共享
+     */
+    private JedisPool jedisPool;
+
+    /**
+     * 连接池是否由本对象创建，创建的连接池在close时关闭
      */
-    private Jedis jedis;
+    private boolean ownPool;
 
     /**
      * IP
@@ -60,6 +123,65 @@ public class RedisSequenceRange implements SequenceRangeManager {
      */
     private Integer step = 1000;
 
+    /**
+     * 步长策略，为空时固定使用step
+     */
+    private StepPolicy stepPolicy;
+
+    /**
+     * 是否使用Lua脚本分配区间
+     */
+    private boolean useScript;
+
+    /**
+     * 区间不存在时的初始值，第一个区间从stepStart + 1开始，仅脚本模式有效
+     */
+    private long stepStart = 0;
+
+    /**
+     * 序列号最大值，仅脚本模式有效
+     */
+    private long maxValue = MAX_SCRIPT_VALUE;
+
+    /**
+     * 缓存的脚本SHA1
+     */
+    private volatile String scriptSha;
+
+    /**
+     * 连接和读写超时(毫秒)
+     */
+    private int timeout = 2000;
+
+    /**
+     * 连接池最大连接数，也是同时提交区间请求的最大线程数；外部传入连接池时应与连接池的maxTotal一致
+     */
+    private int maxTotal = 8;
+
+    /**
+     * 连接异常时的最大重试次数
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 第一次重试前的等待时长(毫秒)，之后每次翻倍
+     */
+    private long retryBackoffMillis = 50;
+
+    /**
+     * 重试等待时长的上限(毫秒)
+     */
+    private long maxRetryBackoffMillis = 1000;
+
+    /**
+     * 等待合并提交的区间请求
+     */
+    private final ConcurrentLinkedQueue<RangeRequest> pendingRequests = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 正在提交区间请求的线程数
+     */
+    private final AtomicInteger flushers = new AtomicInteger();
 
     /**
      * 获取指定区间名的下一个区间
@@ -70,9 +192,226 @@ public class RedisSequenceRange implements SequenceRangeManager {
      */
     @Override
     public SequenceRange nextRange(String name) throws SequenceException {
-        long max = jedis.incrBy(getRealKey(name), step);
-        long min = max - step + 1;
-        return new SequenceRange(min, max);
+        RangeRequest request = newRequest(name);
+        pendingRequests.add(request);
+        return awaitRange(request);
+    }
+
+    /**
+     * 一次获取多个区间名的下一个区间，所有请求同时入队，按MAX_BATCH_SIZE分成几次pipeline提交
+     *
+     * @param names 区间名
+     * @return 区间名到区间的映射
+     * @throws SequenceException 异常
+     */
+    @Override
+    public Map<String, SequenceRange> nextRanges(Collection<String> names) throws SequenceException {
+        Map<String, RangeRequest> requests = new LinkedHashMap<>();
+        for (String name : names) {
+            if (!requests.containsKey(name)) {
+                requests.put(name, newRequest(name));
+            }
+        }
+        pendingRequests.addAll(requests.values());
+        Map<String, SequenceRange> ranges = new LinkedHashMap<>();
+        for (Map.Entry<String, RangeRequest> entry : requests.entrySet()) {
+            ranges.put(entry.getKey(), awaitRange(entry.getValue()));
+        }
+        return ranges;
+    }
+
+    private RangeRequest newRequest(String name) {
+        int rangeStep = null == stepPolicy ? step : stepPolicy.nextStep(name);
+        return new RangeRequest(name, getRealKey(name), rangeStep);
+    }
+
+    /**
+     * 等待请求完成，提交线程数没有达到maxTotal时由自己提交队列中的请求，
+     * 自己的请求完成后立即返回，剩下的请求由仍在等待的调用方继续提交
+     *
+     * @param request 已入队的请求
+     * @return 区间
+     */
+    private SequenceRange awaitRange(RangeRequest request) {
+        for (; ; ) {
+            if (request.result.isDone()) {
+                return request.getRange();
+            }
+            int current = flushers.get();
+            if (current < maxTotal && flushers.compareAndSet(current, current + 1)) {
+                try {
+                    // 提交排在自己前面的请求，顺带提交同一批中排在后面的请求
+                    while (!request.result.isDone() && !pendingRequests.isEmpty()) {
+                        flush();
+                    }
+                } finally {
+                    flushers.decrementAndGet();
+                }
+            } else {
+                request.await(BATCH_WAIT_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * 取出一批请求，通过一次pipeline提交
+     */
+    private void flush() {
+        List<RangeRequest> batch = new ArrayList<>();
+        RangeRequest request;
+        while (batch.size() < MAX_BATCH_SIZE && null != (request = pendingRequests.poll())) {
+            batch.add(request);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (int attempt = 0; ; attempt++) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                if (useScript) {
+                    evalNextRange(jedis, batch);
+                } else {
+                    incrBy(jedis, batch);
+                }
+                return;
+            } catch (JedisConnectionException e) {
+                if (attempt >= maxRetries) {
+                    SequenceException exception = new SequenceException(
+                        "[RedisSequenceRange-nextRange] redis connection failed, retried " + attempt + " times.", e);
+                    for (RangeRequest failed : batch) {
+                        failed.result.completeExceptionally(exception);
+                    }
+                    return;
+                }
+                // 连接已经损坏，归还时连接池会丢弃它，重试时取到新的连接
+                sleep(Math.min(maxRetryBackoffMillis, retryBackoffMillis << Math.min(attempt, 20)));
+            } catch (RuntimeException e) {
+                for (RangeRequest failed : batch) {
+                    failed.result.completeExceptionally(new SequenceException(e));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 执行INCRBY，多个请求时使用pipeline。连接异常后重试可能会让某个key多增加一次，只会浪费一个区间，不会产生重复的序列号
+     *
+     * @param jedis 连接
+     * @param batch 请求
+     */
+    private void incrBy(Jedis jedis, List<RangeRequest> batch) {
+        if (batch.size() == 1) {
+            RangeRequest request = batch.get(0);
+            request.complete(jedis.incrBy(request.key, request.step));
+            return;
+        }
+        Pipeline pipeline = jedis.pipelined();
+        List<Response<Long>> responses = new ArrayList<>(batch.size());
+        for (RangeRequest request : batch) {
+            responses.add(pipeline.incrBy(request.key, request.step));
+        }
+        pipeline.sync();
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(responses.get(i).get());
+        }
+    }
+
+    /**
+     * 通过EVALSHA执行分配脚本。脚本缓存被清空(NOSCRIPT)时重新加载并只重试失败的请求
+     *
+     * @param jedis 连接
+     * @param batch 请求
+     */
+    private void evalNextRange(Jedis jedis, List<RangeRequest> batch) {
+        String sha = scriptSha;
+        if (null == sha) {
+            sha = loadScript(jedis);
+        }
+        List<RangeRequest> noScript = evalNextRange(jedis, batch, sha);
+        if (!noScript.isEmpty()) {
+            noScript = evalNextRange(jedis, noScript, loadScript(jedis));
+            for (RangeRequest failed : noScript) {
+                failed.result.completeExceptionally(
+                    new SequenceException("[RedisSequenceRange-nextRange] script not loaded, key = " + failed.key));
+            }
+        }
+    }
+
+    private List<RangeRequest> evalNextRange(Jedis jedis, List<RangeRequest> batch, String sha) {
+        // Pipeline中String参数的evalsha按字符串解析返回值，这里使用byte[]参数的版本
+        byte[] shaBytes = SafeEncoder.encode(sha);
+        List<Response<Object>> responses = new ArrayList<>(batch.size());
+        Pipeline pipeline = jedis.pipelined();
+        for (RangeRequest request : batch) {
+            responses.add(pipeline.evalsha(shaBytes, 2, SafeEncoder.encode(request.key), SafeEncoder.encode(STEP_KEY),
+                SafeEncoder.encode(String.valueOf(stepStart)), SafeEncoder.encode(String.valueOf(request.step)),
+                SafeEncoder.encode(String.valueOf(maxValue)), SafeEncoder.encode(request.name)));
+        }
+        pipeline.sync();
+        List<RangeRequest> noScript = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            RangeRequest request = batch.get(i);
+            try {
+                List<?> result = (List<?>) responses.get(i).get();
+                long min = (Long) result.get(0);
+                long max = (Long) result.get(1);
+                if (min < 0) {
+                    request.result.completeExceptionally(new SequenceException(
+                        "[RedisSequenceRange-nextRange] Sequence value overflow, value = " + max + ", maxValue = "
+                            + maxValue + ", key = " + request.key));
+                } else {
+                    request.result.complete(new SequenceRange(min, max));
+                }
+            } catch (JedisDataException e) {
+                if (null != e.getMessage() && e.getMessage().startsWith("NOSCRIPT")) {
+                    noScript.add(request);
+                } else {
+                    request.result.completeExceptionally(new SequenceException(e));
+                }
+            }
+        }
+        return noScript;
+    }
+
+    private String loadScript(Jedis jedis) {
+        String sha = jedis.scriptLoad(SCRIPT_NEXT_RANGE);
+        scriptSha = sha;
+        return sha;
+    }
+
+    /**
+     * 设置某个区间名的步长，仅脚本模式有效，设置后所有节点下一次取区间时生效
+     *
+     * @param name 区间名
+     * @param step 步长
+     */
+    public void putNameStep(String name, int step) {
+        if (step <= 0) {
+            throw new SecurityException("[RedisSequenceRange-putNameStep] step <= 0.");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.hset(STEP_KEY, name, String.valueOf(step));
+        }
+    }
+
+    /**
+     * 删除某个区间名的步长配置，恢复使用step或stepPolicy
+     *
+     * @param name 区间名
+     */
+    public void removeNameStep(String name) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.hdel(STEP_KEY, name);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SequenceException(e);
+        }
     }
 
     /**
@@ -81,13 +420,48 @@ public class RedisSequenceRange implements SequenceRangeManager {
     @Override
     public void init() {
         checkParam();
-        jedis = new Jedis(ip, port);
-        if (null != auth) {
-            jedis.auth(auth);
+        if (null != jedisPool) {
+            return;
+        }
+        checkConnectionParam();
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxTotal);
+        jedisPool = new JedisPool(poolConfig, ip, port, timeout, auth);
+        ownPool = true;
+    }
+
+    /**
+     * 关闭自己创建的连接池，外部传入的连接池由外部关闭
+     */
+    public void close() {
+        if (ownPool && null != jedisPool) {
+            jedisPool.close();
         }
     }
 
+    /**
+     * 与连接池无关的参数，外部传入连接池时同样需要校验
+     */
     private void checkParam() {
+        if (useScript) {
+            checkScriptParam();
+        }
+        if (maxTotal <= 0) {
+            throw new SecurityException("[RedisSequenceRange-checkParam] maxTotal must greater than 0.");
+        }
+        if (maxRetries < 0) {
+            throw new SecurityException("[RedisSequenceRange-checkParam] maxRetries < 0.");
+        }
+        if (retryBackoffMillis < 0 || maxRetryBackoffMillis < 0) {
+            throw new SecurityException("[RedisSequenceRange-checkParam] retryBackoffMillis < 0.");
+        }
+    }
+
+    /**
+     * 自己创建连接池时需要的参数
+     */
+    private void checkConnectionParam() {
         if (isEmpty(ip)) {
             throw new SecurityException("[RedisSequenceRange-checkParam] ip is empty.");
         }
@@ -96,6 +470,15 @@ public class RedisSequenceRange implements SequenceRangeManager {
         }
     }
 
+    private void checkScriptParam() {
+        if (stepStart < 0) {
+            throw new SecurityException("[RedisSequenceRange-checkParam] stepStart < 0.");
+        }
+        if (maxValue <= stepStart || maxValue > MAX_SCRIPT_VALUE) {
+            throw new SecurityException("[RedisSequenceRange-checkParam] maxValue must be in (stepStart, 2^53-1].");
+        }
+    }
+
     private boolean isEmpty(String str) {
         return null == str || str.length() == 0;
     }
@@ -109,6 +492,14 @@ public class RedisSequenceRange implements SequenceRangeManager {
         return KEY_PREFIX + name;
     }
 
+    public JedisPool getJedisPool() {
+        return jedisPool;
+    }
+
+    public void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
     public String getIp() {
         return ip;
     }
@@ -140,4 +531,123 @@ public class RedisSequenceRange implements SequenceRangeManager {
     public void setStep(Integer step) {
         this.step = step;
     }
+
+    public StepPolicy getStepPolicy() {
+        return stepPolicy;
+    }
+
+    public void setStepPolicy(StepPolicy stepPolicy) {
+        this.stepPolicy = stepPolicy;
+    }
+
+    public boolean isUseScript() {
+        return useScript;
+    }
+
+    public void setUseScript(boolean useScript) {
+        this.useScript = useScript;
+    }
+
+    public long getStepStart() {
+        return stepStart;
+    }
+
+    public void setStepStart(long stepStart) {
+        this.stepStart = stepStart;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+
+    public void setMaxValue(long maxValue) {
+        this.maxValue = maxValue;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public long getMaxRetryBackoffMillis() {
+        return maxRetryBackoffMillis;
+    }
+
+    public void setMaxRetryBackoffMillis(long maxRetryBackoffMillis) {
+        this.maxRetryBackoffMillis = maxRetryBackoffMillis;
+    }
+
+    /**
+     * 一个等待提交的区间请求
+     */
+    private static final class RangeRequest {
+
+        private final String name;
+
+        private final String key;
+
+        private final int step;
+
+        private final CompletableFuture<SequenceRange> result = new CompletableFuture<>();
+
+        private RangeRequest(String name, String key, int step) {
+            this.name = name;
+            this.key = key;
+            this.step = step;
+        }
+
+        private void complete(long max) {
+            result.complete(new SequenceRange(max - step + 1, max));
+        }
+
+        private void await(long millis) {
+            try {
+                result.get(millis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SequenceException(e);
+            } catch (ExecutionException | TimeoutException e) {
+                // 由调用方检查结果
+            }
+        }
+
+        private SequenceRange getRange() {
+            try {
+                return result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SequenceException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof SequenceException ? (SequenceException) cause : new SequenceException(cause);
+            }
+        }
+    }
 }
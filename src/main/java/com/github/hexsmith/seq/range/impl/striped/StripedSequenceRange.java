@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.striped;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+import com.github.hexsmith.seq.range.ValueSpacePartition;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分片区间管理器，装饰DB、Redis等区间管理器
+ * <br>
+ * 一个逻辑区间名对应stripes个物理区间名(name#0 ... name#K-1)，即K行记录或K个key，
+ * 第i个分片的本地序列号平移到值空间分区[(i + 1) * partitionSize, (i + 2) * partitionSize)，各分片互不重复。
+ * 分区0留给未分片时的区间名，已经在使用的区间名开启分片后不会与之前的序列号重复(之前的值需小于partitionSize)。
+ * 每个节点按亲和性优先使用一个分片，不同节点分散到不同的行上，热点行上的竞争随K下降；
+ * 某个分片失败或分配过慢时，切换到下一个分片。
+ * <br>
+ * 适用于不要求全局递增、只要求唯一的业务。物理区间名比逻辑区间名多2-4个字符，DB表的name字段为varchar(32)。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-02 11:00
+ */
+public class StripedSequenceRange implements SequenceRangeManager {
+
+    /**
+     * 物理区间名的分隔符
+     */
+    private static final String STRIPE_SEPARATOR = "#";
+
+    /**
+     * 被装饰的区间管理器[必选]
+     */
+    private SequenceRangeManager delegate;
+
+    /**
+     * 分片个数[可选，默认：4]
+     */
+    private int stripes = 4;
+
+    /**
+     * 每个分片的值空间大小[可选，默认：2^48]
+     */
+    private long partitionSize = 1L << 48;
+
+    /**
+     * 本节点优先使用的分片，小于0时按进程名取模[可选，默认：-1]
+     */
+    private int preferredStripe = -1;
+
+    /**
+     * 一次分配超过该时长视为分片竞争激烈，下一次换到其它分片(毫秒)[可选，默认：50]
+     */
+    private long slowThresholdMillis = 50;
+
+    /**
+     * 每个分片对应的值空间分区
+     */
+    private ValueSpacePartition[] partitions;
+
+    /**
+     * 每个逻辑区间名当前使用的分片
+     */
+    private final ConcurrentMap<String, AtomicInteger> currentStripes = new ConcurrentHashMap<>();
+
+    /**
+     * 获取指定区间名的下一个区间，从当前分片开始依次尝试所有分片
+     *
+     * @param name 区间名
+     * @return 返回区间
+     * @throws SequenceException 所有分片都失败
+     */
+    @Override
+    public SequenceRange nextRange(String name) throws SequenceException {
+        AtomicInteger current = currentStripe(name);
+        int start = current.get();
+        SequenceException last = null;
+        for (int i = 0; i < stripes; i++) {
+            int stripe = (start + i) % stripes;
+            long begin = System.nanoTime();
+            try {
+                SequenceRange local = delegate.nextRange(stripeName(name, stripe));
+                if (System.nanoTime() - begin > TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis)) {
+                    // 这个分片很慢，下一次从后一个分片开始
+                    current.compareAndSet(start, (stripe + 1) % stripes);
+                } else if (stripe != start) {
+                    current.compareAndSet(start, stripe);
+                }
+                return partitions[stripe].translate(local);
+            } catch (SequenceException e) {
+                last = e;
+            }
+        }
+        throw new SequenceException("[StripedSequenceRange-nextRange] all " + stripes + " stripes failed, name = "
+            + name, last);
+    }
+
+    /**
+     * 批量获取区间，每个区间名使用当前分片，通过被装饰管理器的nextRanges一次完成
+     *
+     * @param names 区间名
+     * @return 区间名到区间的映射
+     * @throws SequenceException 异常
+     */
+    @Override
+    public Map<String, SequenceRange> nextRanges(Collection<String> names) throws SequenceException {
+        Map<String, Integer> stripeOfName = new LinkedHashMap<>();
+        Map<String, String> nameOfStripeName = new HashMap<>();
+        for (String name : names) {
+            int stripe = currentStripe(name).get();
+            stripeOfName.put(name, stripe);
+            nameOfStripeName.put(stripeName(name, stripe), name);
+        }
+        Map<String, SequenceRange> locals = delegate.nextRanges(nameOfStripeName.keySet());
+        Map<String, SequenceRange> ranges = new LinkedHashMap<>();
+        for (Map.Entry<String, SequenceRange> entry : locals.entrySet()) {
+            String name = nameOfStripeName.get(entry.getKey());
+            ranges.put(name, partitions[stripeOfName.get(name)].translate(entry.getValue()));
+        }
+        return ranges;
+    }
+
+    private AtomicInteger currentStripe(String name) {
+        AtomicInteger current = currentStripes.get(name);
+        if (null != current) {
+            return current;
+        }
+        return currentStripes.computeIfAbsent(name, n -> new AtomicInteger(preferredStripe));
+    }
+
+    private String stripeName(String name, int stripe) {
+        return name + STRIPE_SEPARATOR + stripe;
+    }
+
+    /**
+     * 初始化
+     */
+    @Override
+    public void init() {
+        checkParam();
+        if (preferredStripe < 0) {
+            preferredStripe = Math.floorMod(ManagementFactory.getRuntimeMXBean().getName().hashCode(), stripes);
+        }
+        partitions = new ValueSpacePartition[stripes];
+        for (int i = 0; i < stripes; i++) {
+            partitions[i] = ValueSpacePartition.of(i + 1, partitionSize);
+        }
+        delegate.init();
+    }
+
+    private void checkParam() {
+        if (null == delegate) {
+            throw new SecurityException("[StripedSequenceRange-checkParam] delegate is null.");
+        }
+        if (stripes <= 0) {
+            throw new SecurityException("[StripedSequenceRange-checkParam] stripes must greater than 0.");
+        }
+        if (partitionSize <= 0 || partitionSize > Long.MAX_VALUE / (stripes + 1)) {
+            throw new SecurityException(
+                "[StripedSequenceRange-checkParam] (stripes + 1) * partitionSize exceeds Long.MAX_VALUE.");
+        }
+        if (preferredStripe >= stripes) {
+            throw new SecurityException("[StripedSequenceRange-checkParam] preferredStripe must less than stripes.");
+        }
+        if (slowThresholdMillis < 0) {
+            throw new SecurityException("[StripedSequenceRange-checkParam] slowThresholdMillis < 0.");
+        }
+    }
+
+    public SequenceRangeManager getDelegate() {
+        return delegate;
+    }
+
+    public void setDelegate(SequenceRangeManager delegate) {
+        this.delegate = delegate;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    public long getPartitionSize() {
+        return partitionSize;
+    }
+
+    public void setPartitionSize(long partitionSize) {
+        this.partitionSize = partitionSize;
+    }
+
+    public int getPreferredStripe() {
+        return preferredStripe;
+    }
+
+    public void setPreferredStripe(int preferredStripe) {
+        this.preferredStripe = preferredStripe;
+    }
+
+    public long getSlowThresholdMillis() {
+        return slowThresholdMillis;
+    }
+
+    public void setSlowThresholdMillis(long slowThresholdMillis) {
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+}
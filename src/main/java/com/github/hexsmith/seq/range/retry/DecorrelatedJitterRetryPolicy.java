@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.retry;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带去相关抖动(decorrelated jitter)的指数退避，以时间预算代替重试次数
+ * <br>
+ * 第一次冲突立即重试(通常是区间刚被新增，或者偶发的一次冲突)，之后每次等待 random(baseMillis, 上次等待 * 3)，
+ * 不超过capMillis。大量节点同时重启时各节点的重试时间被随机打散，不会一起反复撞上同一行。
+ * 累计耗时超过budgetMillis后放弃。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-09 10:20
+ */
+public class DecorrelatedJitterRetryPolicy implements RetryPolicy {
+
+    /**
+     * 最短等待时长(毫秒)
+     */
+    private long baseMillis = 5;
+
+    /**
+     * 最长等待时长(毫秒)
+     */
+    private long capMillis = 200;
+
+    /**
+     * 重试的时间预算(毫秒)
+     */
+    private long budgetMillis = 5000;
+
+    @Override
+    public long nextDelayMillis(int attempt, long previousDelayMillis, long elapsedMillis) {
+        if (elapsedMillis >= budgetMillis) {
+            return -1;
+        }
+        if (attempt <= 1) {
+            return 0;
+        }
+        long upper = Math.max(baseMillis, Math.min(capMillis, previousDelayMillis * 3));
+        long delay = upper > baseMillis ? ThreadLocalRandom.current().nextLong(baseMillis, upper + 1) : baseMillis;
+        // 最后一次等待不超出预算
+        return Math.min(delay, budgetMillis - elapsedMillis);
+    }
+
+    public long getBaseMillis() {
+        return baseMillis;
+    }
+
+    public void setBaseMillis(long baseMillis) {
+        if (baseMillis <= 0) {
+            throw new SequenceException("[DecorrelatedJitterRetryPolicy-setBaseMillis] baseMillis must greater than 0.");
+        }
+        this.baseMillis = baseMillis;
+    }
+
+    public long getCapMillis() {
+        return capMillis;
+    }
+
+    public void setCapMillis(long capMillis) {
+        if (capMillis <= 0) {
+            throw new SequenceException("[DecorrelatedJitterRetryPolicy-setCapMillis] capMillis must greater than 0.");
+        }
+        this.capMillis = capMillis;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    public void setBudgetMillis(long budgetMillis) {
+        if (budgetMillis <= 0) {
+            throw new SequenceException("[DecorrelatedJitterRetryPolicy-setBudgetMillis] budgetMillis must greater than 0.");
+        }
+        this.budgetMillis = budgetMillis;
+    }
+}
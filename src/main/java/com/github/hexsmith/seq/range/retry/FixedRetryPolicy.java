@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.retry;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+/**
+ * 固定次数、不等待的重试策略，冲突不多时延迟最低
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-09 10:10
+ */
+public class FixedRetryPolicy implements RetryPolicy {
+
+    /**
+     * 最多尝试的次数
+     */
+    private final int maxAttempts;
+
+    public FixedRetryPolicy(int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new SequenceException("[FixedRetryPolicy] maxAttempts must greater than 0.");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public long nextDelayMillis(int attempt, long previousDelayMillis, long elapsedMillis) {
+        return attempt < maxAttempts ? 0 : -1;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
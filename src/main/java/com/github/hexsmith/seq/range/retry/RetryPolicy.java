@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.retry;
+
+/**
+ * 区间分配冲突(乐观更新失败)时的重试策略，决定下一次重试前等待多久以及何时放弃
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-09 10:00
+ */
+public interface RetryPolicy {
+
+    /**
+     * 计算下一次重试前的等待时长，每次冲突后调用一次
+     *
+     * @param attempt             已经失败的次数，从1开始
+     * @param previousDelayMillis 上一次等待的时长(毫秒)，第一次冲突时为0
+     * @param elapsedMillis       从第一次尝试到现在经过的时长(毫秒)
+     * @return 等待时长(毫秒)，0表示立即重试，小于0表示放弃
+     */
+    long nextDelayMillis(int attempt, long previousDelayMillis, long elapsedMillis);
+
+}
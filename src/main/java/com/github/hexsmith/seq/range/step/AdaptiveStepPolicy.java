@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.step;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 根据区间消耗速度自适应调整步长的策略
+ * <br>
+ * 以两次获取区间的时间间隔作为上一个区间的使用时长，按 目标时长/使用时长 的比例调整步长：
+ * 区间用得比目标时长快就放大步长，减少访问DB/Redis的次数；用得慢就缩小步长，减少重启时浪费的序列号。
+ * 单次调整幅度限制在原步长的1/2到2倍之间，并始终落在[minStep, maxStep]内。
+ * minStep和maxStep可以按任意顺序设置，也可以用{@link #setStepBounds(int, int)}一起设置，
+ * 两者的大小关系在第一次获取步长时校验。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-12 10:20
+ */
+public class AdaptiveStepPolicy implements StepPolicy {
+
+    /**
+     * 单次调整的最大倍数
+     */
+    private static final int MAX_FACTOR = 2;
+
+    /**
+     * 每个区间名的步长状态
+     */
+    private final ConcurrentMap<String, StepState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 初始步长
+     */
+    private int initialStep = 1000;
+
+    /**
+     * 最小步长
+     */
+    private int minStep = 100;
+
+    /**
+     * 最大步长
+     */
+    private int maxStep = 1000000;
+
+    /**
+     * 期望一个区间使用的时长，默认15分钟
+     */
+    private long targetMillis = TimeUnit.MINUTES.toMillis(15);
+
+    /**
+     * 获取指定区间名本次应使用的步长，每获取一个区间调用一次
+     *
+     * @param name 区间名
+     * @return 步长
+     */
+    @Override
+    public int nextStep(String name) {
+        StepState state = states.get(name);
+        if (null == state) {
+            checkStepBounds();
+            state = states.computeIfAbsent(name, key -> new StepState(clamp(initialStep)));
+        }
+        long now = System.nanoTime();
+        synchronized (state) {
+            if (state.lastNanos != 0) {
+                long lastedNanos = Math.max(1L, now - state.lastNanos);
+                double factor = (double) TimeUnit.MILLISECONDS.toNanos(targetMillis) / lastedNanos;
+                factor = Math.max(1.0 / MAX_FACTOR, Math.min(MAX_FACTOR, factor));
+                state.step = clamp((long) (state.step * factor));
+            }
+            state.lastNanos = now;
+            return state.step;
+        }
+    }
+
+    /**
+     * 获取指定区间名当前的步长，不会改变策略的状态
+     *
+     * @param name 区间名
+     * @return 步长，区间名还未获取过区间时返回初始步长
+     */
+    @Override
+    public int currentStep(String name) {
+        StepState state = states.get(name);
+        return null == state ? clamp(initialStep) : state.step;
+    }
+
+    /**
+     * 所有区间名当前的步长快照
+     *
+     * @return 区间名到步长的映射
+     */
+    public Map<String, Integer> getCurrentSteps() {
+        Map<String, Integer> steps = new HashMap<>(states.size());
+        for (Map.Entry<String, StepState> entry : states.entrySet()) {
+            steps.put(entry.getKey(), entry.getValue().step);
+        }
+        return steps;
+    }
+
+    private void checkStepBounds() {
+        if (minStep > maxStep) {
+            throw new SequenceException("[AdaptiveStepPolicy-checkStepBounds] minStep must not greater than maxStep, "
+                + "minStep = " + minStep + ", maxStep = " + maxStep + ".");
+        }
+    }
+
+    private int clamp(long step) {
+        return (int) Math.max(minStep, Math.min(maxStep, step));
+    }
+
+    public int getInitialStep() {
+        return initialStep;
+    }
+
+    public void setInitialStep(int initialStep) {
+        if (initialStep <= 0) {
+            throw new SequenceException("[AdaptiveStepPolicy-setInitialStep] initialStep must greater than 0.");
+        }
+        this.initialStep = initialStep;
+    }
+
+    public int getMinStep() {
+        return minStep;
+    }
+
+    public void setMinStep(int minStep) {
+        if (minStep <= 0) {
+            throw new SequenceException("[AdaptiveStepPolicy-setMinStep] minStep must greater than 0.");
+        }
+        this.minStep = minStep;
+    }
+
+    public int getMaxStep() {
+        return maxStep;
+    }
+
+    public void setMaxStep(int maxStep) {
+        if (maxStep <= 0) {
+            throw new SequenceException("[AdaptiveStepPolicy-setMaxStep] maxStep must greater than 0.");
+        }
+        this.maxStep = maxStep;
+    }
+
+    /**
+     * 同时设置最小和最大步长
+     *
+     * @param minStep 最小步长
+     * @param maxStep 最大步长，不能小于minStep
+     */
+    public void setStepBounds(int minStep, int maxStep) {
+        if (minStep <= 0 || minStep > maxStep) {
+            throw new SequenceException("[AdaptiveStepPolicy-setStepBounds] 需要满足0 < minStep <= maxStep.");
+        }
+        this.minStep = minStep;
+        this.maxStep = maxStep;
+    }
+
+    public long getTargetMillis() {
+        return targetMillis;
+    }
+
+    public void setTargetMillis(long targetMillis) {
+        if (targetMillis <= 0) {
+            throw new SequenceException("[AdaptiveStepPolicy-setTargetMillis] targetMillis must greater than 0.");
+        }
+        this.targetMillis = targetMillis;
+    }
+
+    /**
+     * 单个区间名的步长状态
+     */
+    private static final class StepState {
+
+        /**
+         * 当前步长
+         */
+        private volatile int step;
+
+        /**
+         * 上次获取区间的时间(System.nanoTime)，0表示还未获取过
+         */
+        private long lastNanos;
+
+        private StepState(int step) {
+            this.step = step;
+        }
+    }
+}
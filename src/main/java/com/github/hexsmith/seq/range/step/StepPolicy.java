@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.step;
+
+/**
+ * 区间步长策略，由区间管理器在每次获取区间前调用，决定本次区间的大小
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-12 10:05
+ */
+public interface StepPolicy {
+
+    /**
+     * 获取指定区间名本次应使用的步长，每获取一个区间调用一次
+     *
+     * @param name 区间名
+     * @return 步长
+     */
+    int nextStep(String name);
+
+    /**
+     * 获取指定区间名当前的步长，不会改变策略的状态
+     *
+     * @param name 区间名
+     * @return 步长
+     */
+    int currentStep(String name);
+
+}
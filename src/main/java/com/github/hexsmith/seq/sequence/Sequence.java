@@ -17,6 +17,8 @@ package com.github.hexsmith.seq.sequence;
 
 import com.github.hexsmith.seq.exception.SequenceException;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 序列号生成器接口
  *
@@ -32,4 +34,53 @@ public interface Sequence {
      * @throws SequenceException 序列号生成异常
      */
     long nextValue() throws SequenceException;
+
+    /**
+     * 异步生成下一个序列号，用于不能阻塞的事件循环线程。
+     * 默认实现同步调用nextValue，区间生成器在需要切换区间时不阻塞调用线程，见各实现类
+     *
+     * @return 序列号，生成失败时以SequenceException异常完成
+     */
+    default CompletableFuture<Long> nextValueAsync() {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        try {
+            future.complete(nextValue());
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 批量生成n个序列号
+     *
+     * @param n 序列号个数
+     * @return 序列号数组
+     * @throws SequenceException 序列号生成异常
+     */
+    default long[] nextValues(int n) throws SequenceException {
+        if (n < 0) {
+            throw new IllegalArgumentException("n < 0, n = " + n);
+        }
+        long[] values = new long[n];
+        fill(values, 0, n);
+        return values;
+    }
+
+    /**
+     * 批量生成序列号并写入dst[off, off + len)，默认实现逐个调用nextValue，实现类应尽量一次性申请整段序列号
+     *
+     * @param dst 目标数组
+     * @param off 起始下标
+     * @param len 序列号个数
+     * @throws SequenceException 序列号生成异常
+     */
+    default void fill(long[] dst, int off, int len) throws SequenceException {
+        if (off < 0 || len < 0 || off > dst.length - len) {
+            throw new IndexOutOfBoundsException("off = " + off + ", len = " + len + ", length = " + dst.length);
+        }
+        for (int i = off, end = off + len; i < end; i++) {
+            dst[i] = nextValue();
+        }
+    }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+/**
+ * 雪花算法遇到系统时钟回退时的处理策略
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-19 14:20
+ */
+public enum ClockBackwardsPolicy {
+
+    /**
+     * 直接抛出异常(默认)
+     */
+    FAIL,
+
+    /**
+     * 回退不超过maxBackwardsMillis时等待时钟追上上次生成ID的时间，超过则抛出异常
+     */
+    WAIT,
+
+    /**
+     * 回退不超过maxBackwardsMillis时不等待，继续使用上次生成ID的时间作为逻辑时钟，
+     * 毫秒内序列用完后逻辑时钟自增，但与真实时间的差距不超过maxBackwardsMillis；超过则抛出异常
+     */
+    LOGICAL_CLOCK,
+
+    /**
+     * 回退不超过maxBackwardsMillis时等待；超过时切换到备用workerId(workerId最高位置1)继续生成，
+     * 备用workerId从未使用过，因此不会与回退前生成的ID重复。备用workerId只能切换一次，
+     * 使用该策略时集群中所有节点的workerId都只能占用低一半的取值(默认布局下为0~15)，SnowflakeSequence会拒绝高一半的workerId
+     */
+    SPARE_WORKER
+}
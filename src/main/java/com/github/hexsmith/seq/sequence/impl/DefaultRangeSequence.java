@@ -16,26 +16,39 @@
 package com.github.hexsmith.seq.sequence.impl;
 
 import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.AsyncSequenceRangeManager;
 import com.github.hexsmith.seq.range.SequenceRange;
 import com.github.hexsmith.seq.range.SequenceRangeManager;
 import com.github.hexsmith.seq.sequence.RangeSequence;
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 序列号区间生成器接口默认实现
+ * <br>
+ * 每次生成序列号都要读的currentRange和区间切换时写的refilling放在父类中，前后有填充，
+ * 见{@link DefaultRangeSequenceFields}
  *
  * @author yuzp
  * @version V1.0
  * @since 2018-06-05 14:59
  */
-public class DefaultRangeSequence implements RangeSequence {
+public class DefaultRangeSequence extends DefaultRangeSequenceRhsPadding implements RangeSequence {
 
     /**
-     * 获取区间是加一把独占锁防止资源冲突
+     * 等待其它线程切换区间时每次park的时长(纳秒)
      */
-    private final Lock lock = new ReentrantLock();
+    private static final long REFILL_PARK_NANOS = 10000L;
 
     /**
      * 序列号区间管理器
@@ -43,14 +56,54 @@ public class DefaultRangeSequence implements RangeSequence {
     private SequenceRangeManager sequenceRangeManager;
 
     /**
-     * 当前序列号区间
+     * 需要获取的区间名称
      */
-    private volatile SequenceRange currentRange;
+    private String rangeName;
 
     /**
-     * 需要获取的区间名称
+     * 预取阈值，当前区间剩余的比例低于该值时在后台获取下一个区间，0表示不预取
      */
-    private String rangeName;
+    private double prefetchThreshold = 0;
+
+    /**
+     * 执行预取任务和异步切换区间的线程池，为空时使用默认的守护线程池
+     */
+    private Executor prefetchExecutor;
+
+    /**
+     * 预取中或已预取完成的下一个区间
+     */
+    private final AtomicReference<CompletableFuture<SequenceRange>> prefetchedRange = new AtomicReference<>();
+
+    /**
+     * 等待区间切换完成的异步调用，见{@link #nextValueAsync()}
+     */
+    private final ConcurrentLinkedDeque<CompletableFuture<Long>> waiters = new ConcurrentLinkedDeque<>();
+
+    /**
+     * 每个线程一次从区间中切出的序列号个数，0表示不切分，所有线程直接在区间上递增
+     */
+    private int subBlockSize = 0;
+
+    /**
+     * 每个线程当前的子区间
+     */
+    private final ThreadLocal<SubBlock> subBlocks = ThreadLocal.withInitial(SubBlock::new);
+
+    /**
+     * 本地区间日志，为空表示不记录
+     */
+    private RangeJournal journal;
+
+    /**
+     * 区间切换次数
+     */
+    private final LongAdder rangeSwitchCount = new LongAdder();
+
+    /**
+     * 区间切换时调用方仍需同步等待区间的次数
+     */
+    private final LongAdder blockedSwitchCount = new LongAdder();
 
     /**
      * 设置区间管理器
@@ -72,6 +125,63 @@ public class DefaultRangeSequence implements RangeSequence {
         this.rangeName = rangeName;
     }
 
+    /**
+     * 设置第一个区间，通常由批量预热一次取回，避免第一次生成序列号时再访问区间管理器。
+     * 已经有区间时忽略，被忽略的区间只会留下空洞，不会产生重复的序列号
+     *
+     * @param range 区间
+     * @return 是否设置成功
+     */
+    public boolean setInitialRange(SequenceRange range) {
+        if (null == range || !REFILLING.compareAndSet(this, 0, 1)) {
+            return false;
+        }
+        try {
+            return null == currentRange && install(null, range);
+        } finally {
+            releaseRefilling();
+        }
+    }
+
+    /**
+     * 从本地日志恢复上次留下的区间作为第一个区间，不访问区间管理器
+     *
+     * @return 是否恢复成功
+     */
+    public boolean resume() {
+        if (null == journal || !REFILLING.compareAndSet(this, 0, 1)) {
+            return false;
+        }
+        try {
+            if (null != currentRange) {
+                return false;
+            }
+            SequenceRange range = journal.recover();
+            return null != range && install(null, range);
+        } finally {
+            releaseRefilling();
+        }
+    }
+
+    /**
+     * 关闭序列号生成器：封存当前区间，开启本地日志时记录下一个序列号，重启后从该值继续。
+     * 关闭后仍然可以生成序列号，但不再记录日志
+     */
+    public void close() {
+        if (null == journal) {
+            return;
+        }
+        while (!REFILLING.compareAndSet(this, 0, 1)) {
+            LockSupport.parkNanos(REFILL_PARK_NANOS);
+        }
+        try {
+            SequenceRange range = currentRange;
+            journal.close(null == range ? -1 : range.drain());
+        } finally {
+            releaseRefilling();
+        }
+    }
+
     /**
      * 生成下一个序列号
      *
@@ -80,39 +190,482 @@ public class DefaultRangeSequence implements RangeSequence {
      */
     @Override
     public long nextValue() throws SequenceException {
-        // 当前区间不存在，重新获取一个区间
-        if (null == currentRange) {
-            lock.lock();
+        if (subBlockSize > 0) {
+            return nextValueFromSubBlock();
+        }
+        for (; ; ) {
+            SequenceRange range = currentRange;
+            if (null != range) {
+                // 当value值为-1时，表明区间的序列号已经分配完，需要重新获取区间
+                long value = range.getAndIncrement();
+                if (value != -1) {
+                    return accept(range, value);
+                }
+            }
+            refill(range);
+        }
+    }
+
+    /**
+     * 异步生成下一个序列号。当前区间还有序列号时直接返回已完成的future；
+     * 区间用完时调用方进入等待队列，由一个调用方在预取线程池中发起区间切换，切换完成后依次完成等待的future，
+     * 调用线程不会阻塞在JDBC、Jedis的IO上。
+     * <br>
+     * 区间管理器实现了{@link AsyncSequenceRangeManager}时直接使用其异步接口，否则在预取线程池中同步获取区间。
+     * 等待中的future在完成区间切换的线程上完成，其后的回调不应阻塞，或使用*Async方法指定线程池。
+     * 异步调用不使用子区间，直接在当前区间上递增
+     *
+     * @return 序列号，生成失败时以SequenceException异常完成
+     */
+    @Override
+    public CompletableFuture<Long> nextValueAsync() {
+        SequenceRange range = currentRange;
+        if (null != range) {
+            long value = range.getAndIncrement();
+            if (value != -1) {
+                CompletableFuture<Long> future = new CompletableFuture<>();
+                complete(future, range, value);
+                return future;
+            }
+        }
+        CompletableFuture<Long> waiter = new CompletableFuture<>();
+        waiters.offerLast(waiter);
+        drainWaiters();
+        return waiter;
+    }
+
+    /**
+     * 依次用当前区间完成等待的future，区间用完时抢refilling标记发起异步切换。
+     * 抢不到标记说明其它线程正在切换，它释放标记后会再次调用本方法，等待者不会丢失
+     */
+    private void drainWaiters() {
+        CompletableFuture<Long> waiter;
+        while (null != (waiter = waiters.pollFirst())) {
+            SequenceRange range = currentRange;
+            long value = null == range ? -1 : range.getAndIncrement();
+            if (value != -1) {
+                complete(waiter, range, value);
+                continue;
+            }
+            waiters.offerFirst(waiter);
+            if (!REFILLING.compareAndSet(this, 0, 1)) {
+                return;
+            }
+            if (currentRange != range) {
+                // 其它线程已经完成了切换
+                releaseRefilling();
+                return;
+            }
+            refillAsync(range);
+            return;
+        }
+    }
+
+    /**
+     * 异步替换已经用完的区间，调用方需要持有refilling标记，切换完成后释放标记并继续完成等待的future
+     *
+     * @param exhausted 已经用完的区间，为空表示还没有区间
+     */
+    private void refillAsync(SequenceRange exhausted) {
+        CompletableFuture<SequenceRange> future;
+        try {
+            future = loadNextRangeAsync(exhausted);
+        } catch (Throwable e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((range, error) -> {
+            Throwable failure = error;
             try {
-                if (null == currentRange) {
-                    currentRange = sequenceRangeManager.nextRange(rangeName);
+                if (null == failure) {
+                    install(exhausted, range);
                 }
+            } catch (Throwable e) {
+                failure = e;
             } finally {
-                lock.unlock();
+                if (null == failure) {
+                    releaseRefilling();
+                } else {
+                    refilling = 0;
+                }
+            }
+            if (null != failure) {
+                failWaiters(failure);
+            }
+        });
+    }
+
+    /**
+     * 异步获取下一个区间，优先使用本地日志和预取的区间
+     *
+     * @param exhausted 已经用完的区间，为空表示还没有区间
+     * @return 下一个区间
+     */
+    private CompletableFuture<SequenceRange> loadNextRangeAsync(SequenceRange exhausted) {
+        if (null == exhausted && null != journal) {
+            SequenceRange recovered = journal.recover();
+            if (null != recovered) {
+                return CompletableFuture.completedFuture(recovered);
             }
         }
-        // 当value值为-1时，表明区间的序列号已经分配完，需要重新获取区间
-        long value = currentRange.getAndIncrement();
-        if (value == -1) {
-            lock.lock();
-            try {
-                for (; ; ) {
-                    if (currentRange.isRangeOver()) {
-                        currentRange = sequenceRangeManager.nextRange(rangeName);
+        rangeSwitchCount.increment();
+        CompletableFuture<SequenceRange> prefetched = prefetchedRange.getAndSet(null);
+        if (null == prefetched) {
+            return nextRangeAsync();
+        }
+        // 预取失败，降级为重新获取
+        return prefetched.handle((range, error) -> null == error ? CompletableFuture.completedFuture(range)
+            : nextRangeAsync()).thenCompose(future -> future);
+    }
+
+    private CompletableFuture<SequenceRange> nextRangeAsync() {
+        if (sequenceRangeManager instanceof AsyncSequenceRangeManager) {
+            return ((AsyncSequenceRangeManager) sequenceRangeManager).nextRangeAsync(rangeName);
+        }
+        CompletableFuture<SequenceRange> future = new CompletableFuture<>();
+        try {
+            getPrefetchExecutor().execute(() -> {
+                try {
+                    future.complete(sequenceRangeManager.nextRange(rangeName));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new SequenceException("[DefaultRangeSequence-nextValueAsync] "
+                + "prefetch executor rejected, name = " + rangeName, e));
+        }
+        return future;
+    }
+
+    /**
+     * 区间切换失败，当前所有等待者以异常完成，之后的调用会重新发起切换
+     *
+     * @param error 异常
+     */
+    private void failWaiters(Throwable error) {
+        Throwable cause = error instanceof CompletionException && null != error.getCause() ? error.getCause() : error;
+        CompletableFuture<Long> waiter;
+        while (null != (waiter = waiters.pollFirst())) {
+            waiter.completeExceptionally(cause);
+        }
+    }
+
+    private void complete(CompletableFuture<Long> future, SequenceRange range, long value) {
+        try {
+            future.complete(accept(range, value));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 接受从区间中取到的序列号：检查溢出、记录本地日志、在预取点上触发预取
+     *
+     * @param range 区间
+     * @param value 序列号
+     * @return 序列号
+     */
+    private long accept(SequenceRange range, long value) {
+        if (value < 0) {
+            throw overflow(value);
+        }
+        if (null != journal) {
+            journal.reserve(value);
+        }
+        // 每个区间只有一个线程会拿到预取点上的序列号，由它触发预取
+        if (prefetchThreshold > 0 && value == prefetchPoint(range)) {
+            prefetch();
+        }
+        return value;
+    }
+
+    /**
+     * 子区间模式：线程先用一次getAndAdd从当前区间切出subBlockSize个序列号，之后在线程内递增，
+     * 不再争用区间上共享的计数器。同一线程内序列号递增，不同线程之间不再有全局顺序；
+     * 线程退出或序列号生成器关闭时子区间里没用完的序列号成为空洞
+     *
+     * @return 序列号
+     */
+    private long nextValueFromSubBlock() {
+        SubBlock block = subBlocks.get();
+        if (block.remaining > 0) {
+            block.remaining--;
+            return block.next++;
+        }
+        for (; ; ) {
+            SequenceRange range = currentRange;
+            if (null != range) {
+                long start = range.getAndAdd(subBlockSize);
+                if (start != -1) {
+                    if (start < 0) {
+                        throw overflow(start);
                     }
-                    value = currentRange.getAndIncrement();
-                    if (value == -1) {
-                        continue;
+                    int count = (int) Math.min(subBlockSize, range.getMax() - start + 1);
+                    if (null != journal) {
+                        journal.reserve(start + count - 1);
+                    }
+                    if (prefetchThreshold > 0) {
+                        long point = prefetchPoint(range);
+                        if (point >= start && point < start + count) {
+                            prefetch();
+                        }
+                    }
+                    block.next = start + 1;
+                    block.remaining = count - 1;
+                    return start;
+                }
+            }
+            refill(range);
+        }
+    }
+
+    /**
+     * 批量生成序列号，每个区间只做一次getAndAdd，当前区间不够时切换到下一个区间继续申请
+     *
+     * @param dst 目标数组
+     * @param off 起始下标
+     * @param len 序列号个数
+     * @throws SequenceException 序列号生成异常
+     */
+    @Override
+    public void fill(long[] dst, int off, int len) throws SequenceException {
+        if (off < 0 || len < 0 || off > dst.length - len) {
+            throw new IndexOutOfBoundsException("off = " + off + ", len = " + len + ", length = " + dst.length);
+        }
+        int filled = 0;
+        while (filled < len) {
+            SequenceRange range = currentRange;
+            if (null != range) {
+                long start = range.getAndAdd(len - filled);
+                if (start != -1) {
+                    if (start < 0) {
+                        throw overflow(start);
+                    }
+                    int count = (int) Math.min(len - filled, range.getMax() - start + 1);
+                    if (null != journal) {
+                        journal.reserve(start + count - 1);
+                    }
+                    for (int i = 0; i < count; i++) {
+                        dst[off + filled + i] = start + i;
+                    }
+                    filled += count;
+                    if (prefetchThreshold > 0) {
+                        long point = prefetchPoint(range);
+                        if (point >= start && point < start + count) {
+                            prefetch();
+                        }
+                    }
+                    continue;
+                }
+            }
+            refill(range);
+        }
+    }
+
+    /**
+     * 替换已经用完(或还不存在)的区间，只有抢到refilling标记的线程会获取新区间并通过CAS安装，
+     * 其它线程不加锁，短暂park后在新区间上重试
+     *
+     * @param exhausted 已经用完的区间，为空表示还没有区间
+     */
+    private void refill(SequenceRange exhausted) {
+        if (REFILLING.compareAndSet(this, 0, 1)) {
+            try {
+                // 其它线程可能已经完成了切换
+                if (currentRange == exhausted) {
+                    SequenceRange next = null;
+                    if (null == exhausted && null != journal) {
+                        next = journal.recover();
                     }
-                    break;
+                    install(exhausted, null != next ? next : loadNextRange());
                 }
             } finally {
-                lock.unlock();
+                releaseRefilling();
             }
+            return;
         }
-        if (value < 0) {
-            throw new SequenceException("Sequence value overflow, value = " + value);
+        while (refilling != 0 && currentRange == exhausted) {
+            LockSupport.parkNanos(REFILL_PARK_NANOS);
         }
-        return value;
+    }
+
+    /**
+     * 释放refilling标记，同步切换期间进入等待队列的异步调用由释放标记的线程继续完成
+     */
+    private void releaseRefilling() {
+        refilling = 0;
+        if (!waiters.isEmpty()) {
+            drainWaiters();
+        }
+    }
+
+    /**
+     * 序列号溢出后每次调用都会失败，异常不记录堆栈
+     */
+    private static SequenceException overflow(long value) {
+        return new SequenceException("Sequence value overflow, value = " + value, false);
+    }
+
+    /**
+     * 安装新区间，调用方需要持有refilling标记。开启本地日志时先记录区间再安装，保证发放的序列号都已记录
+     *
+     * @param expect 期望的当前区间
+     * @param range  新区间
+     * @return 是否安装成功
+     */
+    private boolean install(SequenceRange expect, SequenceRange range) {
+        if (null != journal) {
+            journal.begin(range);
+        }
+        return CURRENT_RANGE.compareAndSet(this, expect, range);
+    }
+
+    /**
+     * 计算区间的预取点，序列号分配到该值时开始预取下一个区间
+     *
+     * @param range 区间
+     * @return 预取点
+     */
+    private long prefetchPoint(SequenceRange range) {
+        long size = range.getMax() - range.getMin() + 1;
+        return Math.max(range.getMin(), range.getMax() - (long) (size * prefetchThreshold));
+    }
+
+    /**
+     * 在后台线程中获取下一个区间
+     */
+    private void prefetch() {
+        CompletableFuture<SequenceRange> future = new CompletableFuture<>();
+        if (!prefetchedRange.compareAndSet(null, future)) {
+            return;
+        }
+        try {
+            getPrefetchExecutor().execute(() -> {
+                try {
+                    future.complete(sequenceRangeManager.nextRange(rangeName));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            prefetchedRange.compareAndSet(future, null);
+        }
+    }
+
+    /**
+     * 获取下一个区间，优先使用预取的区间，预取未完成时等待其完成，预取失败时同步获取
+     *
+     * @return 下一个区间
+     */
+    private SequenceRange loadNextRange() {
+        rangeSwitchCount.increment();
+        CompletableFuture<SequenceRange> future = prefetchedRange.getAndSet(null);
+        if (null != future) {
+            boolean ready = future.isDone();
+            try {
+                SequenceRange range = future.join();
+                if (!ready) {
+                    blockedSwitchCount.increment();
+                }
+                return range;
+            } catch (CompletionException | CancellationException e) {
+                // 预取失败，降级为同步获取
+            }
+        }
+        blockedSwitchCount.increment();
+        return sequenceRangeManager.nextRange(rangeName);
+    }
+
+    private Executor getPrefetchExecutor() {
+        return null != prefetchExecutor ? prefetchExecutor : PrefetchExecutorHolder.INSTANCE;
+    }
+
+    /**
+     * 设置预取阈值，取值范围[0,1)，0表示不预取
+     *
+     * @param prefetchThreshold 预取阈值，例如0.2表示区间剩余20%时开始预取
+     */
+    public void setPrefetchThreshold(double prefetchThreshold) {
+        if (prefetchThreshold < 0 || prefetchThreshold >= 1) {
+            throw new SequenceException("[DefaultRangeSequence-setPrefetchThreshold] prefetchThreshold 必须在[0,1)之间.");
+        }
+        this.prefetchThreshold = prefetchThreshold;
+    }
+
+    public void setPrefetchExecutor(Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * 设置子区间大小，大于0时开启子区间模式，见{@link #nextValue()}。
+     * 用严格的节点内全局顺序换取多核下的扩展性，适合核数很多、单个业务名称调用非常频繁的场景
+     *
+     * @param subBlockSize 每个线程一次切出的序列号个数，0表示不切分
+     */
+    public void setSubBlockSize(int subBlockSize) {
+        if (subBlockSize < 0) {
+            throw new SequenceException("[DefaultRangeSequence-setSubBlockSize] subBlockSize < 0.");
+        }
+        this.subBlockSize = subBlockSize;
+    }
+
+    public int getSubBlockSize() {
+        return subBlockSize;
+    }
+
+    /**
+     * 设置本地区间日志，需要在生成第一个序列号之前设置
+     *
+     * @param journal 区间日志
+     */
+    public void setJournal(RangeJournal journal) {
+        this.journal = journal;
+    }
+
+    public RangeJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * 区间切换次数(包含第一次获取区间)
+     *
+     * @return 切换次数
+     */
+    public long getRangeSwitchCount() {
+        return rangeSwitchCount.sum();
+    }
+
+    /**
+     * 区间切换时调用方仍需同步等待区间的次数，开启预取后该值应远小于切换次数
+     *
+     * @return 同步等待次数
+     */
+    public long getBlockedSwitchCount() {
+        return blockedSwitchCount.sum();
+    }
+
+    /**
+     * 线程私有的子区间[next, next + remaining)，只由所属线程读写
+     */
+    private static final class SubBlock {
+
+        private long next;
+
+        private int remaining;
+    }
+
+    /**
+     * 默认的预取线程池，所有序列号生成器共享，使用守护线程不阻止JVM退出
+     */
+    private static final class PrefetchExecutorHolder {
+
+        private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+
+        private static final Executor INSTANCE = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "sequence-prefetch-" + THREAD_INDEX.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 }
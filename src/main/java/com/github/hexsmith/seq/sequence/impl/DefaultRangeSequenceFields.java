@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.range.SequenceRange;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * DefaultRangeSequence中被并发访问的字段，前后各用128字节填充。
+ * 多个序列号生成器通常在启动时一起创建、在堆上相邻，填充后一个生成器切换区间时不会让其它生成器的currentRange所在缓存行失效
+ * <br>
+ * HotSpot总是先排父类的字段，因此通过继承实现的填充不会被字段重排打乱
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-11 10:30
+ */
+abstract class DefaultRangeSequenceFields extends DefaultRangeSequenceLhsPadding {
+
+    static final AtomicReferenceFieldUpdater<DefaultRangeSequenceFields, SequenceRange> CURRENT_RANGE =
+        AtomicReferenceFieldUpdater.newUpdater(DefaultRangeSequenceFields.class, SequenceRange.class, "currentRange");
+
+    static final AtomicIntegerFieldUpdater<DefaultRangeSequenceFields> REFILLING =
+        AtomicIntegerFieldUpdater.newUpdater(DefaultRangeSequenceFields.class, "refilling");
+
+    /**
+     * 当前序列号区间，区间用完后由抢到refilling标记的线程通过CAS替换
+     */
+    volatile SequenceRange currentRange;
+
+    /**
+     * 是否有线程正在获取新区间(1表示是)，保证同一时刻只有一个线程访问区间管理器
+     */
+    volatile int refilling;
+}
+
+/**
+ * 并发字段之前的填充
+ */
+abstract class DefaultRangeSequenceLhsPadding {
+
+    /**
+     * 占住对象头之后的4字节空隙，否则子类的int/boolean字段会被排进这个空隙，落到填充之外
+     */
+    int p;
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+/**
+ * 并发字段之后的填充
+ */
+abstract class DefaultRangeSequenceRhsPadding extends DefaultRangeSequenceFields {
+
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * 序列号区间的本地日志，每个业务名称一个内存映射文件
+ * <br>
+ * 文件中记录当前区间[min, max]和高水位hw：小于hw的序列号可能已经发放，大于等于hw的序列号一定没有发放。
+ * 发放序列号前先把hw提前预留reserve个并写入文件，因此写文件的频率是每reserve个序列号一次，而不是每个序列号一次。
+ * <ul>
+ * <li>正常关闭：区间被封存，记录确切的下一个序列号，重启后从该值继续使用剩余区间，不访问区间管理器也不留空洞</li>
+ * <li>进程崩溃：写入内存映射文件的数据仍在操作系统页缓存中，重启后从hw继续，最多丢弃reserve个序列号，不会重复</li>
+ * <li>操作系统崩溃或掉电：只有开启force时才安全，每次提升hw都会刷盘</li>
+ * </ul>
+ * 同一个文件同时只能被一个进程使用，打开时通过文件锁保证
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-05 10:00
+ */
+public class RangeJournal {
+
+    private static final int MAGIC = 0x53514A4E;
+
+    private static final int VERSION = 1;
+
+    private static final int FILE_SIZE = 64;
+
+    private static final int OFFSET_MAGIC = 0;
+
+    private static final int OFFSET_VERSION = 4;
+
+    private static final int OFFSET_MIN = 8;
+
+    private static final int OFFSET_MAX = 16;
+
+    private static final int OFFSET_HIGH_WATER = 24;
+
+    private static final int OFFSET_NEXT = 32;
+
+    private static final int OFFSET_STATE = 40;
+
+    /**
+     * 文件中没有可以恢复的区间
+     */
+    private static final byte STATE_INVALID = 0;
+
+    /**
+     * 区间使用中，崩溃后从hw恢复
+     */
+    private static final byte STATE_ACTIVE = 1;
+
+    /**
+     * 正常关闭，从记录的下一个序列号恢复
+     */
+    private static final byte STATE_CLEAN = 2;
+
+    /**
+     * 日志文件
+     */
+    private final File file;
+
+    /**
+     * 每次提升hw时预留的序列号个数
+     */
+    private final long reserve;
+
+    /**
+     * 提升hw时是否刷盘
+     */
+    private final boolean force;
+
+    private RandomAccessFile raf;
+
+    private FileLock lock;
+
+    private MappedByteBuffer buffer;
+
+    /**
+     * 是否已经打开过，恢复只在第一次打开时进行
+     */
+    private boolean opened;
+
+    private boolean closed;
+
+    /**
+     * 当前记录的区间上限
+     */
+    private long max = -1;
+
+    /**
+     * 已经写入文件的高水位，发放小于该值的序列号不需要再写文件
+     */
+    private volatile long reserved = Long.MAX_VALUE;
+
+    public RangeJournal(File file, long reserve, boolean force) {
+        if (null == file) {
+            throw new SecurityException("[RangeJournal] file is null.");
+        }
+        if (reserve <= 0) {
+            throw new SecurityException("[RangeJournal] reserve must greater than zero.");
+        }
+        this.file = file;
+        this.reserve = reserve;
+        this.force = force;
+    }
+
+    /**
+     * 打开日志并恢复上次留下的区间，只在第一次调用时生效
+     *
+     * @return 可以继续使用的区间，没有时返回null
+     * @throws SequenceException 日志文件打开失败或被其它进程占用
+     */
+    public synchronized SequenceRange recover() throws SequenceException {
+        if (opened || closed) {
+            return null;
+        }
+        open();
+        if (buffer.getInt(OFFSET_MAGIC) != MAGIC || buffer.getInt(OFFSET_VERSION) != VERSION) {
+            buffer.putInt(OFFSET_MAGIC, MAGIC);
+            buffer.putInt(OFFSET_VERSION, VERSION);
+            buffer.put(OFFSET_STATE, STATE_INVALID);
+            return null;
+        }
+        byte state = buffer.get(OFFSET_STATE);
+        long min = buffer.getLong(OFFSET_MIN);
+        long max = buffer.getLong(OFFSET_MAX);
+        long start;
+        if (state == STATE_CLEAN) {
+            start = buffer.getLong(OFFSET_NEXT);
+        } else if (state == STATE_ACTIVE) {
+            start = buffer.getLong(OFFSET_HIGH_WATER);
+        } else {
+            return null;
+        }
+        // 恢复出的区间在重新记录之前不能再被恢复一次
+        buffer.put(OFFSET_STATE, STATE_INVALID);
+        if (start < min || start > max) {
+            return null;
+        }
+        return new SequenceRange(start, max);
+    }
+
+    /**
+     * 记录一个即将开始使用的区间，必须在区间的第一个序列号发放之前调用
+     *
+     * @param range 区间
+     */
+    public synchronized void begin(SequenceRange range) {
+        if (closed) {
+            return;
+        }
+        if (null == buffer) {
+            open();
+            buffer.putInt(OFFSET_MAGIC, MAGIC);
+            buffer.putInt(OFFSET_VERSION, VERSION);
+        }
+        // 先作废旧记录，写入过程中崩溃时不会恢复出新旧混合的区间
+        buffer.put(OFFSET_STATE, STATE_INVALID);
+        buffer.putLong(OFFSET_MIN, range.getMin());
+        buffer.putLong(OFFSET_MAX, range.getMax());
+        buffer.putLong(OFFSET_HIGH_WATER, range.getMin());
+        buffer.put(OFFSET_STATE, STATE_ACTIVE);
+        if (force) {
+            buffer.force();
+        }
+        this.max = range.getMax();
+        this.reserved = range.getMin();
+    }
+
+    /**
+     * 发放序列号前调用，保证文件中的hw大于value
+     *
+     * @param value 即将发放的最大序列号
+     */
+    public void reserve(long value) {
+        long current = reserved;
+        // 已预留，或者value不属于当前区间(旧区间上最后几个并发发放的序列号)
+        if (value < current || current > max) {
+            return;
+        }
+        synchronized (this) {
+            if (closed || value < reserved || reserved > max) {
+                return;
+            }
+            long highWater = value >= max - reserve ? max + 1 : value + 1 + reserve;
+            buffer.putLong(OFFSET_HIGH_WATER, highWater);
+            if (force) {
+                buffer.force();
+            }
+            reserved = highWater;
+        }
+    }
+
+    /**
+     * 正常关闭，记录下一个序列号
+     *
+     * @param next 下一个没有发放的序列号，-1表示当前区间已经用完
+     */
+    public synchronized void close(long next) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (null == buffer) {
+            return;
+        }
+        try {
+            if (next >= 0 && next >= buffer.getLong(OFFSET_MIN) && next <= buffer.getLong(OFFSET_MAX)) {
+                buffer.putLong(OFFSET_NEXT, next);
+                buffer.put(OFFSET_STATE, STATE_CLEAN);
+            } else {
+                buffer.put(OFFSET_STATE, STATE_INVALID);
+            }
+            buffer.force();
+        } finally {
+            buffer = null;
+            reserved = Long.MAX_VALUE;
+            try {
+                lock.release();
+                raf.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void open() {
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (null != parent && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+                throw new SequenceException("[RangeJournal-open] can not create directory " + parent);
+            }
+            raf = new RandomAccessFile(file, "rw");
+            FileChannel channel = raf.getChannel();
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (null == lock) {
+                raf.close();
+                throw new SequenceException("[RangeJournal-open] journal is locked by another owner: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            opened = true;
+        } catch (IOException e) {
+            throw new SequenceException("[RangeJournal-open] open journal failed: " + file, e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getReserve() {
+        return reserve;
+    }
+
+    public boolean isForce() {
+        return force;
+    }
+}
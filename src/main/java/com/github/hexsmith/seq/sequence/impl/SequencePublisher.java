@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.sequence.Sequence;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 序列号流，按订阅方的请求数通过{@link Sequence#nextValueAsync()}生成序列号，不阻塞调用线程。
+ * <br>
+ * 需要引入可选依赖org.reactivestreams:reactive-streams，Reactor中可以用Flux.from(publisher)使用。
+ * 流不会正常结束，生成序列号失败时以onError结束；每个订阅方独立请求，共享同一个序列号生成器
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-12 16:00
+ */
+public class SequencePublisher implements Publisher<Long> {
+
+    /**
+     * 序列号生成器
+     */
+    private final Sequence sequence;
+
+    public SequencePublisher(Sequence sequence) {
+        if (null == sequence) {
+            throw new NullPointerException("sequence is null");
+        }
+        this.sequence = sequence;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Long> subscriber) {
+        if (null == subscriber) {
+            throw new NullPointerException("subscriber is null");
+        }
+        SequenceSubscription subscription = new SequenceSubscription(sequence, subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * 一个订阅方的订阅。同一时刻最多有一个未完成的nextValueAsync，
+     * 所有信号(包括request参数非法时的onError)都在抢到wip的线程上串行发出
+     */
+    private static final class SequenceSubscription implements Subscription {
+
+        private final Sequence sequence;
+
+        /**
+         * 订阅方，取消或结束后置空，只在drain循环中读写
+         */
+        private Subscriber<? super Long> subscriber;
+
+        /**
+         * 未满足的请求数，Long.MAX_VALUE表示不限
+         */
+        private final AtomicLong requested = new AtomicLong();
+
+        /**
+         * 待处理的drain次数，只有从0开始递增的线程进入drain循环
+         */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        /**
+         * 已请求、尚未发给订阅方的序列号，只在drain循环中读写
+         */
+        private CompletableFuture<Long> pending;
+
+        /**
+         * 等待在drain循环中发给订阅方的错误
+         */
+        private volatile Throwable error;
+
+        private volatile boolean cancelled;
+
+        private SequenceSubscription(Sequence sequence, Subscriber<? super Long> subscriber) {
+            this.sequence = sequence;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (null == error) {
+                    error = new IllegalArgumentException("§3.9 request must be positive, n = " + n);
+                }
+                drain();
+                return;
+            }
+            for (; ; ) {
+                long current = requested.get();
+                long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                if (requested.compareAndSet(current, next)) {
+                    break;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (; ; ) {
+                for (; ; ) {
+                    if (cancelled) {
+                        // 不再持有订阅方和未完成的序列号
+                        pending = null;
+                        subscriber = null;
+                        break;
+                    }
+                    Throwable failure = error;
+                    if (null != failure) {
+                        fail(failure);
+                        continue;
+                    }
+                    if (null != pending) {
+                        if (!pending.isDone()) {
+                            // 完成时由回调再次进入drain
+                            break;
+                        }
+                        CompletableFuture<Long> done = pending;
+                        pending = null;
+                        emit(done);
+                        continue;
+                    }
+                    long current = requested.get();
+                    if (current == 0) {
+                        break;
+                    }
+                    if (current != Long.MAX_VALUE) {
+                        requested.decrementAndGet();
+                    }
+                    pending = sequence.nextValueAsync();
+                    if (!pending.isDone()) {
+                        pending.whenComplete((value, e) -> drain());
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void emit(CompletableFuture<Long> done) {
+            long value;
+            try {
+                value = done.join();
+            } catch (CompletionException e) {
+                fail(null != e.getCause() ? e.getCause() : e);
+                return;
+            }
+            subscriber.onNext(value);
+        }
+
+        private void fail(Throwable failure) {
+            Subscriber<? super Long> target = subscriber;
+            cancelled = true;
+            target.onError(failure);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+/**
+ * 雪花算法ID拆分后的各个部分
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-20 10:40
+ */
+public final class SnowflakeId {
+
+    /**
+     * 原始ID
+     */
+    private final long id;
+
+    /**
+     * 生成ID的时间(毫秒)，精度为布局的时间单位
+     */
+    private final long timestamp;
+
+    /**
+     * 数据中心ID
+     */
+    private final long dataCenterId;
+
+    /**
+     * 工作机器ID
+     */
+    private final long workerId;
+
+    /**
+     * 时间单位内序列
+     */
+    private final long sequence;
+
+    public SnowflakeId(long id, long timestamp, long dataCenterId, long workerId, long sequence) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.dataCenterId = dataCenterId;
+        this.workerId = workerId;
+        this.sequence = sequence;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getDataCenterId() {
+        return dataCenterId;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public String toString() {
+        return "SnowflakeId{" + "id=" + id + ", timestamp=" + timestamp + ", dataCenterId=" + dataCenterId
+            + ", workerId=" + workerId + ", sequence=" + sequence + '}';
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+/**
+ * 雪花算法ID的位分配：符号位(固定为0) - 时间 - 数据中心ID - 工作机器ID - 时间单位内序列
+ * <br>
+ * 各部分的位数加起来必须等于63，移位和掩码在构造时计算好，生成ID时不需要再做判断。
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-20 10:15
+ */
+public final class SnowflakeLayout {
+
+    /**
+     * 默认布局：41位毫秒时间，5位数据中心ID，5位工作机器ID，12位序列，开始时间截2018-01-01
+     */
+    public static final SnowflakeLayout DEFAULT = new SnowflakeLayout(41, 5, 5, 12, 1514736000000L, 1L);
+
+    /**
+     * 时间所占的位数
+     */
+    private final int timestampBits;
+
+    /**
+     * 数据中心ID所占的位数
+     */
+    private final int dataCenterIdBits;
+
+    /**
+     * 工作机器ID所占的位数
+     */
+    private final int workerIdBits;
+
+    /**
+     * 序列所占的位数
+     */
+    private final int sequenceBits;
+
+    /**
+     * 开始时间截(毫秒)
+     */
+    private final long epoch;
+
+    /**
+     * 时间单位(毫秒)，例如10表示ID中的时间以10毫秒为单位
+     */
+    private final long timeUnitMillis;
+
+    private final long maxTimestamp;
+
+    private final long maxDataCenterId;
+
+    private final long maxWorkerId;
+
+    private final long sequenceMask;
+
+    private final int workerIdShift;
+
+    private final int dataCenterIdShift;
+
+    private final int timestampShift;
+
+    /**
+     * @param timestampBits 时间所占的位数
+     * @param dataCenterIdBits 数据中心ID所占的位数
+     * @param workerIdBits 工作机器ID所占的位数
+     * @param sequenceBits 序列所占的位数
+     * @param epoch 开始时间截(毫秒)
+     * @param timeUnitMillis 时间单位(毫秒)
+     */
+    public SnowflakeLayout(int timestampBits, int dataCenterIdBits, int workerIdBits, int sequenceBits, long epoch,
+                           long timeUnitMillis) {
+        if (timestampBits <= 0 || dataCenterIdBits < 0 || workerIdBits < 0 || sequenceBits <= 0) {
+            throw new SequenceException("[SnowflakeLayout] 时间和序列至少占1位，数据中心ID和工作机器ID不能为负数.");
+        }
+        if (timestampBits + dataCenterIdBits + workerIdBits + sequenceBits != 63) {
+            throw new SequenceException("[SnowflakeLayout] 时间、数据中心ID、工作机器ID、序列的位数之和必须等于63.");
+        }
+        // 生成器把时间和序列打包在一个long中，并保留第62位作为备用workerId标记
+        if (timestampBits + sequenceBits > 62) {
+            throw new SequenceException("[SnowflakeLayout] 数据中心ID和工作机器ID至少占1位.");
+        }
+        if (epoch < 0 || epoch > System.currentTimeMillis()) {
+            throw new SequenceException("[SnowflakeLayout] epoch 不能为负数，也不能晚于当前时间.");
+        }
+        if (timeUnitMillis <= 0) {
+            throw new SequenceException("[SnowflakeLayout] timeUnitMillis 必须大于0.");
+        }
+        this.timestampBits = timestampBits;
+        this.dataCenterIdBits = dataCenterIdBits;
+        this.workerIdBits = workerIdBits;
+        this.sequenceBits = sequenceBits;
+        this.epoch = epoch;
+        this.timeUnitMillis = timeUnitMillis;
+        this.maxTimestamp = -1L ^ (-1L << timestampBits);
+        this.maxDataCenterId = -1L ^ (-1L << dataCenterIdBits);
+        this.maxWorkerId = -1L ^ (-1L << workerIdBits);
+        this.sequenceMask = -1L ^ (-1L << sequenceBits);
+        this.workerIdShift = sequenceBits;
+        this.dataCenterIdShift = sequenceBits + workerIdBits;
+        this.timestampShift = sequenceBits + workerIdBits + dataCenterIdBits;
+    }
+
+    /**
+     * 把ID拆分成时间、数据中心ID、工作机器ID和序列
+     *
+     * @param id 雪花算法生成的ID
+     * @return 拆分结果
+     */
+    public SnowflakeId decode(long id) {
+        if (id < 0) {
+            throw new SequenceException("[SnowflakeLayout-decode] id 不能为负数, id = " + id);
+        }
+        long timestamp = epoch + (id >>> timestampShift) * timeUnitMillis;
+        long dataCenterId = (id >>> dataCenterIdShift) & maxDataCenterId;
+        long workerId = (id >>> workerIdShift) & maxWorkerId;
+        long sequence = id & sequenceMask;
+        return new SnowflakeId(id, timestamp, dataCenterId, workerId, sequence);
+    }
+
+    public int getTimestampBits() {
+        return timestampBits;
+    }
+
+    public int getDataCenterIdBits() {
+        return dataCenterIdBits;
+    }
+
+    public int getWorkerIdBits() {
+        return workerIdBits;
+    }
+
+    public int getSequenceBits() {
+        return sequenceBits;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getTimeUnitMillis() {
+        return timeUnitMillis;
+    }
+
+    public long getMaxTimestamp() {
+        return maxTimestamp;
+    }
+
+    public long getMaxDataCenterId() {
+        return maxDataCenterId;
+    }
+
+    public long getMaxWorkerId() {
+        return maxWorkerId;
+    }
+
+    public long getSequenceMask() {
+        return sequenceMask;
+    }
+
+    public int getWorkerIdShift() {
+        return workerIdShift;
+    }
+
+    public int getDataCenterIdShift() {
+        return dataCenterIdShift;
+    }
+
+    public int getTimestampShift() {
+        return timestampShift;
+    }
+
+    @Override
+    public String toString() {
+        return "SnowflakeLayout{" + "timestampBits=" + timestampBits + ", dataCenterIdBits=" + dataCenterIdBits
+            + ", workerIdBits=" + workerIdBits + ", sequenceBits=" + sequenceBits + ", epoch=" + epoch
+            + ", timeUnitMillis=" + timeUnitMillis + '}';
+    }
+}
@@ -17,6 +17,11 @@ package com.github.hexsmith.seq.sequence.impl;
 
 import com.github.hexsmith.seq.exception.SequenceException;
 import com.github.hexsmith.seq.sequence.Sequence;
+import com.github.hexsmith.seq.worker.WorkerIdLease;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 基于雪花算法的序列号生成器实现
@@ -33,6 +38,11 @@ import com.github.hexsmith.seq.sequence.Sequence;
  * （5）最后12位是毫秒内的计数（12位的计数顺序号支持每个节点每毫秒产生4096个ID序号）
  * <br>
  * 一共加起来刚好64位，为一个Long型。(转换成字符串长度为18)
+ * <br>
+ * 以上为默认布局，时间、数据中心ID、工作机器ID、序列的位数以及开始时间截和时间单位可以通过{@link SnowflakeLayout}调整。
+ * <br>
+ * 上次生成ID的时间截和毫秒内序列打包在同一个AtomicLong中，通过CAS推进，不使用锁；
+ * 毫秒内序列用完时park到下一个毫秒，而不是空转。时钟回退时按{@link ClockBackwardsPolicy}处理。
  * @author yuzp
  * @version V1.0
  * @since 2018-06-05 15:09
@@ -40,54 +50,74 @@ import com.github.hexsmith.seq.sequence.Sequence;
 public class SnowflakeSequence implements Sequence {
 
     /**
-     * 开始时间截 (2018-01-01)
+     * ID的位分配
+     */
+    private final SnowflakeLayout layout;
+
+    /**
+     * 开始时间截，默认2018-01-01
+     */
+    private final long twepoch;
+
+    /**
+     * 时间单位(毫秒)
      */
-    private final long twepoch = 1514736000000L;
+    private final long timeUnitMillis;
 
     /**
-     * 机器id所占的位数
+     * 支持的最大时间(相对twepoch，以时间单位计)
      */
-    private final long workerIdBits = 5L;
+    private final long maxTimestamp;
 
     /**
-     * 数据标识id所占的位数
+     * 支持的最大机器id，默认31 (这个移位算法可以很快的计算出几位二进制数所能表示的最大十进制数)
      */
-    private final long dataCenterIdBits = 5L;
+    private final long maxWorkerId;
 
     /**
-     * 支持的最大机器id，结果是31 (这个移位算法可以很快的计算出几位二进制数所能表示的最大十进制数)
+     * 支持的最大数据标识id，默认31
      */
-    private final long maxWorkerId = -1L ^ (-1L << workerIdBits);
+    private final long maxDataCenterId;
 
     /**
-     * 支持的最大数据标识id，结果是31
+     * 序列在id中占的位数，默认12
      */
-    private final long maxDataCenterId = -1L ^ (-1L << dataCenterIdBits);
+    private final int sequenceBits;
 
     /**
-     * 序列在id中占的位数
+     * 机器ID向左移的位数，默认12
      */
-    private final long sequenceBits = 12L;
+    private final int workerIdShift;
 
     /**
-     * 机器ID向左移12位
+     * 数据标识id向左移的位数，默认17(12+5)
      */
-    private final long workerIdShift = sequenceBits;
+    private final int dataCenterIdShift;
 
     /**
-     * 数据标识id向左移17位(12+5)
+     * 时间截向左移的位数，默认22(5+5+12)
      */
-    private final long dataCenterIdShift = sequenceBits + workerIdBits;
+    private final int timestampLeftShift;
 
     /**
-     * 时间截向左移22位(5+5+12)
+     * 生成序列的掩码，默认4095 (0b111111111111=0xfff=4095)
      */
-    private final long timestampLeftShift = sequenceBits + workerIdBits + dataCenterIdBits;
+    private final long sequenceMask;
 
     /**
-     * 生成序列的掩码，这里为4095 (0b111111111111=0xfff=4095)
+     * 等待下一个毫秒时每次park的时长(纳秒)
      */
-    private final long sequenceMask = -1L ^ (-1L << sequenceBits);
+    private static final long NEXT_MILLIS_PARK_NANOS = 50000L;
+
+    /**
+     * 状态中表示已经切换到备用workerId的标记位
+     */
+    private static final long SPARE_FLAG = 1L << 62;
+
+    /**
+     * advance返回该值表示需要重新读取状态
+     */
+    private static final long RETRY = -1L;
 
     /**
      * 工作机器ID(0~31)
@@ -100,14 +130,83 @@ public class SnowflakeSequence implements Sequence {
     private long dataCenterId;
 
     /**
-     * 毫秒内序列(0~4095)
+     * 数据中心ID和工作机器ID移位后拼在一起的值
+     */
+    private long nodeBits;
+
+    /**
+     * 切换到备用workerId后使用的nodeBits
      */
-    private long sequence = 0L;
+    private long spareNodeBits;
 
     /**
-     * 上次生成ID的时间截
+     * 上次生成ID的时间截(相对twepoch)左移sequenceBits位，再与毫秒内序列(0~4095)拼在一起，
+     * 第62位为备用workerId标记
      */
-    private long lastTimestamp = -1L;
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * 时钟回退处理策略
+     */
+    private ClockBackwardsPolicy clockBackwardsPolicy = ClockBackwardsPolicy.FAIL;
+
+    /**
+     * 可以容忍的时钟回退(毫秒)，WAIT等待、LOGICAL_CLOCK借用的上限，以及SPARE_WORKER切换的阈值
+     */
+    private long maxBackwardsMillis = 5L;
+
+    /**
+     * 是否使用单调时钟(System.nanoTime)代替System.currentTimeMillis
+     */
+    private boolean monotonicClock = false;
+
+    /**
+     * 单调时钟的起点：墙上时间(毫秒)
+     */
+    private long clockBaseMillis;
+
+    /**
+     * 单调时钟的起点：System.nanoTime
+     */
+    private long clockBaseNanos;
+
+    /**
+     * workerId租约，为空表示workerId是手工指定的；租约过期后拒绝生成ID
+     */
+    private volatile WorkerIdLease workerIdLease;
+
+    /**
+     * 时钟回退事件次数
+     */
+    private final LongAdder clockBackwardsCount = new LongAdder();
+
+    /**
+     * 当前这次时钟回退需要追上的时间，当前时间超过它之后再观察到回退视为新的回退事件
+     */
+    private volatile long backwardsUntil = -1L;
+
+    public SnowflakeSequence() {
+        this(SnowflakeLayout.DEFAULT);
+    }
+
+    public SnowflakeSequence(SnowflakeLayout layout) {
+        if (null == layout) {
+            throw new SequenceException("[SnowflakeSequence] layout is null.");
+        }
+        this.layout = layout;
+        this.twepoch = layout.getEpoch();
+        this.timeUnitMillis = layout.getTimeUnitMillis();
+        this.maxTimestamp = layout.getMaxTimestamp();
+        this.maxWorkerId = layout.getMaxWorkerId();
+        this.maxDataCenterId = layout.getMaxDataCenterId();
+        this.sequenceBits = layout.getSequenceBits();
+        this.workerIdShift = layout.getWorkerIdShift();
+        this.dataCenterIdShift = layout.getDataCenterIdShift();
+        this.timestampLeftShift = layout.getTimestampShift();
+        this.sequenceMask = layout.getSequenceMask();
+        // 默认的workerId、dataCenterId为0时不会调用setter，备用workerId的nodeBits也要在这里算好
+        updateNodeBits();
+    }
 
     /**
      * 生成下一个序列号
@@ -116,71 +215,298 @@ public class SnowflakeSequence implements Sequence {
      * @throws com.github.hexsmith.seq.exception.SequenceException 序列号生成异常
      */
     @Override
-    public synchronized long nextValue() throws SequenceException {
-        long timestamp = timeGen();
-        // 如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
-        if (timestamp < lastTimestamp) {
-            throw new SequenceException("[SnowflakeSequence-nextValue] 当前时间小于上次生成序列号的时间，时间被回退了，请确认服务器时间的设置.");
-        }
-        // 如果是同一时间生成的，则进行毫秒内序列
-        if (lastTimestamp == timestamp) {
-            sequence = (sequence + 1) & sequenceMask;
-            // 毫秒内序列溢出
-            if (sequence == 0) {
-                // 阻塞到下一个毫秒,获得新的时间戳
-                timestamp = tilNextMillis(lastTimestamp);
+    public long nextValue() throws SequenceException {
+        for (; ; ) {
+            long current = state.get();
+            long next = advance(current, 1);
+            if (next != RETRY && state.compareAndSet(current, next)) {
+                return toId(next);
+            }
+        }
+    }
+
+    /**
+     * 批量生成序列号，一次占用当前毫秒内剩余的一段连续计数，不够时进入下一毫秒继续
+     *
+     * @param dst 目标数组
+     * @param off 起始下标
+     * @param len 序列号个数
+     * @throws com.github.hexsmith.seq.exception.SequenceException 序列号生成异常
+     */
+    @Override
+    public void fill(long[] dst, int off, int len) throws SequenceException {
+        if (off < 0 || len < 0 || off > dst.length - len) {
+            throw new IndexOutOfBoundsException("off = " + off + ", len = " + len + ", length = " + dst.length);
+        }
+        int filled = 0;
+        while (filled < len) {
+            long current = state.get();
+            long next = advance(current, len - filled);
+            if (next == RETRY || !state.compareAndSet(current, next)) {
+                continue;
+            }
+            // 同一毫秒(且没有切换workerId)时接着上次的序列继续，否则从0开始
+            long first = ((next ^ current) & ~sequenceMask) == 0 ? (current & sequenceMask) + 1 : 0L;
+            long last = next & sequenceMask;
+            long base = toId(next & ~sequenceMask);
+            for (long seq = first; seq <= last; seq++) {
+                dst[off + filled++] = base | seq;
+            }
+        }
+    }
+
+    /**
+     * 在current状态的基础上申请最多n个连续的毫秒内序列
+     *
+     * @param current 当前状态
+     * @param n 申请的个数
+     * @return 申请后的状态，RETRY表示需要重新读取状态
+     */
+    private long advance(long current, int n) {
+        long spare = current & SPARE_FLAG;
+        long lastTimestamp = (current ^ spare) >>> sequenceBits;
+        // 先读状态再读时间，时钟没有回退时读到的时间一定不早于状态中的时间
+        long wallTime = timeGen();
+        WorkerIdLease lease = workerIdLease;
+        // 租约到期时间按System.currentTimeMillis计算，单调时钟与墙上时间可能有漂移，不能混用
+        if (null != lease && !lease.isValid(monotonicClock ? System.currentTimeMillis() : wallTime)) {
+            throw new SequenceException("[SnowflakeSequence-nextValue] workerId租约已经过期，停止生成ID, lease = " + lease);
+        }
+        long now = (wallTime - twepoch) / timeUnitMillis;
+        long timestamp = now;
+        if (now < lastTimestamp) {
+            long backwards = (lastTimestamp - now) * timeUnitMillis;
+            recordClockBackwards(lastTimestamp, now);
+            boolean tolerable = backwards <= maxBackwardsMillis;
+            switch (clockBackwardsPolicy) {
+                case WAIT:
+                    if (tolerable) {
+                        waitUntil(lastTimestamp);
+                        return RETRY;
+                    }
+                    break;
+                case LOGICAL_CLOCK:
+                    if (tolerable) {
+                        // 继续使用上次的时间作为逻辑时钟
+                        timestamp = lastTimestamp;
+                    }
+                    break;
+                case SPARE_WORKER:
+                    if (tolerable) {
+                        waitUntil(lastTimestamp);
+                        return RETRY;
+                    }
+                    if (spare == 0 && canUseSpareWorker()) {
+                        return SPARE_FLAG | (now << sequenceBits) | (n - 1);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (timestamp < lastTimestamp) {
+                // 如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
+                throw new SequenceException("[SnowflakeSequence-nextValue] 当前时间小于上次生成序列号的时间，时间被回退了"
+                    + backwards + "ms，请确认服务器时间的设置.");
+            }
+        }
+        if (timestamp > lastTimestamp) {
+            if (timestamp > maxTimestamp) {
+                throw new SequenceException("[SnowflakeSequence-nextValue] 时间超出了布局可以表示的范围，请调整epoch或时间位数.");
             }
-        } else {
             // 时间戳改变，毫秒内序列重置
-            sequence = 0L;
+            return spare | (timestamp << sequenceBits) | (Math.min(n, sequenceMask + 1) - 1);
         }
+        long first = (current & sequenceMask) + 1;
+        if (first > sequenceMask) {
+            // 毫秒内序列溢出，逻辑时钟在允许的漂移内直接进入下一个毫秒，否则等到下一个毫秒
+            if (now < lastTimestamp && (lastTimestamp + 1 - now) * timeUnitMillis <= maxBackwardsMillis) {
+                return spare | ((lastTimestamp + 1) << sequenceBits) | (Math.min(n, sequenceMask + 1) - 1);
+            }
+            waitUntil(lastTimestamp + 1);
+            return RETRY;
+        }
+        return current + Math.min(n, sequenceMask - first + 1);
+    }
 
-        // 上次生成ID的时间截
-        lastTimestamp = timestamp;
+    /**
+     * 记录时钟回退事件，同一次回退被多个线程或多次观察到时只记一次
+     *
+     * @param lastTimestamp 上次生成ID的时间截(相对twepoch，以时间单位计)
+     * @param now 当前时间(相对twepoch，以时间单位计)
+     */
+    private void recordClockBackwards(long lastTimestamp, long now) {
+        if (now > backwardsUntil) {
+            clockBackwardsCount.increment();
+        }
+        if (lastTimestamp > backwardsUntil) {
+            backwardsUntil = lastTimestamp;
+        }
+    }
+
+    private boolean canUseSpareWorker() {
+        return spareWorkerBit() != 0 && (workerId & spareWorkerBit()) == 0;
+    }
 
-        // 移位并通过或运算拼到一起组成64位的ID
-        return ((timestamp - twepoch) << timestampLeftShift)
-            | (dataCenterId << dataCenterIdShift)
-            | (workerId << workerIdShift)
-            | sequence;
+    private long spareWorkerBit() {
+        return (maxWorkerId + 1) >> 1;
+    }
+
+    /**
+     * 移位并通过或运算拼到一起组成64位的ID
+     *
+     * @param state 时间截与毫秒内序列
+     * @return ID
+     */
+    private long toId(long state) {
+        long node = (state & SPARE_FLAG) == 0 ? nodeBits : spareNodeBits;
+        long sequence = state & sequenceMask;
+        return (((state & ~SPARE_FLAG) >>> sequenceBits) << timestampLeftShift) | node | sequence;
     }
 
     /**
-     * 阻塞到下一个毫秒，直到获得新的时间戳
+     * park直到时间(相对twepoch，以时间单位计)不小于target
      *
-     * @param lastTimestamp 上次生成ID的时间截
-     * @return 当前时间戳
+     * @param target 目标时间
      */
-    private long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
+    private void waitUntil(long target) {
+        while (currentTick() < target) {
+            LockSupport.parkNanos(NEXT_MILLIS_PARK_NANOS);
         }
-        return timestamp;
     }
 
     /**
-     * 返回以毫秒为单位的当前时间
+     * 当前时间相对twepoch经过的时间单位数
+     *
+     * @return 时间
+     */
+    private long currentTick() {
+        return (timeGen() - twepoch) / timeUnitMillis;
+    }
+
+    /**
+     * 返回以毫秒为单位的当前时间，包内可见以便测试中模拟时钟回退
      *
      * @return 当前时间(毫秒)
      */
-    private long timeGen() {
+    long timeGen() {
+        if (monotonicClock) {
+            return clockBaseMillis + (System.nanoTime() - clockBaseNanos) / 1000000L;
+        }
         return System.currentTimeMillis();
     }
 
+    private void updateNodeBits() {
+        this.nodeBits = (dataCenterId << dataCenterIdShift) | (workerId << workerIdShift);
+        this.spareNodeBits = nodeBits | (spareWorkerBit() << workerIdShift);
+    }
+
     public void setWorkerId(long workerId) {
         if (workerId > maxWorkerId) {
-            throw new SequenceException("[SnowflakeSequence-setWorkerId] workerId 不能大于31.");
+            throw new SequenceException("[SnowflakeSequence-setWorkerId] workerId 不能大于" + maxWorkerId + ".");
+        }
+        if (clockBackwardsPolicy == ClockBackwardsPolicy.SPARE_WORKER && (workerId & spareWorkerBit()) != 0) {
+            throw new SequenceException("[SnowflakeSequence-setWorkerId] SPARE_WORKER策略下workerId 不能大于"
+                + (spareWorkerBit() - 1) + ".");
         }
 
         this.workerId = workerId;
+        updateNodeBits();
     }
 
     public void setDataCenterId(long dataCenterId) {
         if (dataCenterId > maxDataCenterId) {
-            throw new SequenceException("[SnowflakeSequence-setDataCenterId] dataCenterId 不能大于31.");
+            throw new SequenceException("[SnowflakeSequence-setDataCenterId] dataCenterId 不能大于" + maxDataCenterId + ".");
         }
         this.dataCenterId = dataCenterId;
+        updateNodeBits();
+    }
+
+    /**
+     * 使用租约中的dataCenterId和workerId，租约过期后拒绝生成ID
+     *
+     * @param workerIdLease workerId租约
+     */
+    public void setWorkerIdLease(WorkerIdLease workerIdLease) {
+        if (clockBackwardsPolicy == ClockBackwardsPolicy.SPARE_WORKER
+            && (workerIdLease.getWorkerId() & spareWorkerBit()) != 0) {
+            throw new SequenceException("[SnowflakeSequence-setWorkerIdLease] SPARE_WORKER策略下workerId 不能大于"
+                + (spareWorkerBit() - 1) + ", lease = " + workerIdLease);
+        }
+        setDataCenterId(workerIdLease.getDataCenterId());
+        setWorkerId(workerIdLease.getWorkerId());
+        this.workerIdLease = workerIdLease;
+    }
+
+    public WorkerIdLease getWorkerIdLease() {
+        return workerIdLease;
+    }
+
+    /**
+     * 设置时钟回退处理策略。SPARE_WORKER要求workerId的备用位为0，已经设置的workerId不满足时抛出异常，
+     * 之后设置的workerId和租约也会校验；集群中所有节点都只能使用低一半的workerId
+     *
+     * @param clockBackwardsPolicy 时钟回退处理策略
+     */
+    public void setClockBackwardsPolicy(ClockBackwardsPolicy clockBackwardsPolicy) {
+        if (null == clockBackwardsPolicy) {
+            throw new SequenceException("[SnowflakeSequence-setClockBackwardsPolicy] clockBackwardsPolicy is null.");
+        }
+        if (clockBackwardsPolicy == ClockBackwardsPolicy.SPARE_WORKER) {
+            if (spareWorkerBit() == 0) {
+                throw new SequenceException("[SnowflakeSequence-setClockBackwardsPolicy] workerId位数为0，不能使用SPARE_WORKER.");
+            }
+            if ((workerId & spareWorkerBit()) != 0) {
+                throw new SequenceException("[SnowflakeSequence-setClockBackwardsPolicy] SPARE_WORKER策略下workerId 不能大于"
+                    + (spareWorkerBit() - 1) + ", workerId = " + workerId + ".");
+            }
+        }
+        this.clockBackwardsPolicy = clockBackwardsPolicy;
+    }
+
+    public void setMaxBackwardsMillis(long maxBackwardsMillis) {
+        if (maxBackwardsMillis < 0) {
+            throw new SequenceException("[SnowflakeSequence-setMaxBackwardsMillis] maxBackwardsMillis < 0.");
+        }
+        this.maxBackwardsMillis = maxBackwardsMillis;
+    }
+
+    /**
+     * 使用单调时钟：以开启时的墙上时间为起点，之后按System.nanoTime推进，不受NTP调整影响。
+     * 长时间运行后可能与墙上时间有漂移，重启时会重新对齐墙上时间，漂移较大时重启后需要留意时钟回退策略。
+     *
+     * @param monotonicClock 是否使用单调时钟
+     */
+    public void setMonotonicClock(boolean monotonicClock) {
+        this.clockBaseMillis = System.currentTimeMillis();
+        this.clockBaseNanos = System.nanoTime();
+        this.monotonicClock = monotonicClock;
+    }
+
+    /**
+     * ID的位分配，可以用{@link SnowflakeLayout#decode(long)}拆分生成的ID
+     *
+     * @return 位分配
+     */
+    public SnowflakeLayout getLayout() {
+        return layout;
+    }
+
+    /**
+     * 时钟回退事件次数
+     *
+     * @return 次数
+     */
+    public long getClockBackwardsCount() {
+        return clockBackwardsCount.sum();
+    }
+
+    /**
+     * 是否已经切换到备用workerId
+     *
+     * @return 是否切换
+     */
+    public boolean isUsingSpareWorker() {
+        return (state.get() & SPARE_FLAG) != 0;
     }
 
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.worker;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * workerId租约管理器的公共实现：按随机起点依次尝试抢占workerId，并用一个守护线程每 leaseMillis/3 续约一次
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-22 10:30
+ */
+public abstract class AbstractWorkerIdLeaseManager implements WorkerIdLeaseManager {
+
+    /**
+     * 数据中心ID，一般为机房的IDC
+     */
+    private long dataCenterId = 0;
+
+    /**
+     * 可以分配的最大workerId，默认布局下为31；使用SPARE_WORKER时钟回退策略时需要配置为15，
+     * 把高一半留作备用，否则SnowflakeSequenceBuilder拒绝构建。同一个集群中的所有节点都要使用相同的策略
+     */
+    private long maxWorkerId = 31;
+
+    /**
+     * 租约时长(毫秒)
+     */
+    private long leaseMillis = 30000;
+
+    /**
+     * 节点之间允许的最大时钟偏差(毫秒)。租约过期或释放后还要再经过该时长，workerId才允许被其它节点抢占，
+     * 新持有者的时钟落后于旧持有者时也不会重复使用旧持有者已经用过的时间戳
+     */
+    private long maxClockSkewMillis = 10000;
+
+    /**
+     * 租约持有者标识
+     */
+    private String owner = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID();
+
+    /**
+     * 当前持有的租约
+     */
+    private final Set<WorkerIdLease> leases = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 续约线程
+     */
+    private ScheduledExecutorService heartbeatExecutor;
+
+    /**
+     * 申请一个空闲的workerId
+     *
+     * @return 租约
+     * @throws SequenceException 没有空闲的workerId或存储访问异常
+     */
+    @Override
+    public WorkerIdLease acquire() throws SequenceException {
+        long slots = maxWorkerId + 1;
+        // 随机起点，减少大量节点同时启动时抢占同一个workerId
+        long offset = ThreadLocalRandom.current().nextLong(slots);
+        for (long i = 0; i < slots; i++) {
+            long workerId = (offset + i) % slots;
+            long expireAt = System.currentTimeMillis() + leaseMillis;
+            if (tryAcquire(dataCenterId, workerId, owner, expireAt)) {
+                WorkerIdLease lease = new WorkerIdLease(dataCenterId, workerId, owner, expireAt);
+                leases.add(lease);
+                startHeartbeat();
+                return lease;
+            }
+        }
+        throw new SequenceException("[WorkerIdLeaseManager-acquire] 没有空闲的workerId, dataCenterId = " + dataCenterId);
+    }
+
+    /**
+     * 释放租约，释放后该workerId可以被其它节点申请
+     *
+     * @param lease 租约
+     */
+    @Override
+    public void release(WorkerIdLease lease) {
+        if (null == lease || !leases.remove(lease)) {
+            return;
+        }
+        lease.expire();
+        doRelease(lease);
+    }
+
+    /**
+     * 释放所有租约并停止续约线程
+     */
+    public void close() {
+        for (WorkerIdLease lease : leases) {
+            release(lease);
+        }
+        synchronized (this) {
+            if (null != heartbeatExecutor) {
+                heartbeatExecutor.shutdownNow();
+                heartbeatExecutor = null;
+            }
+        }
+    }
+
+    private synchronized void startHeartbeat() {
+        if (null != heartbeatExecutor) {
+            return;
+        }
+        heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sequence-worker-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1L, leaseMillis / 3);
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeat, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 续约所有租约，续约失败的租约到期后自然失效，之后只要存储中的持有者没有变化仍会继续尝试续约
+     */
+    private void heartbeat() {
+        for (WorkerIdLease lease : leases) {
+            long expireAt = System.currentTimeMillis() + leaseMillis;
+            try {
+                if (renew(lease, expireAt)) {
+                    lease.renew(expireAt);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 尝试抢占指定的workerId，workerId不存在或者租约已经过期时才能抢占成功
+     *
+     * @param dataCenterId 数据中心ID
+     * @param workerId 工作机器ID
+     * @param owner 持有者标识
+     * @param expireAt 到期时间(毫秒)
+     * @return 是否抢占成功
+     */
+    protected abstract boolean tryAcquire(long dataCenterId, long workerId, String owner, long expireAt);
+
+    /**
+     * 续约，只有持有者没有变化时才能成功
+     *
+     * @param lease 租约
+     * @param expireAt 新的到期时间(毫秒)
+     * @return 是否续约成功
+     */
+    protected abstract boolean renew(WorkerIdLease lease, long expireAt);
+
+    /**
+     * 在存储中释放租约
+     *
+     * @param lease 租约
+     */
+    protected abstract void doRelease(WorkerIdLease lease);
+
+    protected void checkParam() {
+        if (dataCenterId < 0) {
+            throw new SecurityException("[WorkerIdLeaseManager-checkParam] dataCenterId < 0.");
+        }
+        if (maxWorkerId < 0) {
+            throw new SecurityException("[WorkerIdLeaseManager-checkParam] maxWorkerId < 0.");
+        }
+        if (leaseMillis <= 0) {
+            throw new SecurityException("[WorkerIdLeaseManager-checkParam] leaseMillis must greater than 0.");
+        }
+        if (maxClockSkewMillis < 0) {
+            throw new SecurityException("[WorkerIdLeaseManager-checkParam] maxClockSkewMillis < 0.");
+        }
+        if (null == owner || owner.length() == 0) {
+            throw new SecurityException("[WorkerIdLeaseManager-checkParam] owner is empty.");
+        }
+    }
+
+    public long getDataCenterId() {
+        return dataCenterId;
+    }
+
+    public void setDataCenterId(long dataCenterId) {
+        this.dataCenterId = dataCenterId;
+    }
+
+    public long getMaxWorkerId() {
+        return maxWorkerId;
+    }
+
+    public void setMaxWorkerId(long maxWorkerId) {
+        this.maxWorkerId = maxWorkerId;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    public void setLeaseMillis(long leaseMillis) {
+        this.leaseMillis = leaseMillis;
+    }
+
+    public long getMaxClockSkewMillis() {
+        return maxClockSkewMillis;
+    }
+
+    public void setMaxClockSkewMillis(long maxClockSkewMillis) {
+        this.maxClockSkewMillis = maxClockSkewMillis;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.worker;
+
+/**
+ * 雪花算法workerId租约，租约过期后持有者不能再用该workerId生成ID
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-22 10:05
+ */
+public class WorkerIdLease {
+
+    /**
+     * 数据中心ID
+     */
+    private final long dataCenterId;
+
+    /**
+     * 工作机器ID
+     */
+    private final long workerId;
+
+    /**
+     * 租约持有者标识
+     */
+    private final String owner;
+
+    /**
+     * 租约到期时间(毫秒)，按本地时钟在发起申请/续约之前计算，比存储端记录的到期时间略早
+     */
+    private volatile long expireAt;
+
+    public WorkerIdLease(long dataCenterId, long workerId, String owner, long expireAt) {
+        this.dataCenterId = dataCenterId;
+        this.workerId = workerId;
+        this.owner = owner;
+        this.expireAt = expireAt;
+    }
+
+    /**
+     * 租约在指定时间是否有效
+     *
+     * @param now 当前时间(毫秒)
+     * @return 是否有效
+     */
+    public boolean isValid(long now) {
+        return now < expireAt;
+    }
+
+    /**
+     * 续约成功后延长到期时间
+     *
+     * @param expireAt 新的到期时间(毫秒)
+     */
+    void renew(long expireAt) {
+        if (expireAt > this.expireAt) {
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 立即失效
+     */
+    void expire() {
+        this.expireAt = 0;
+    }
+
+    public long getDataCenterId() {
+        return dataCenterId;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerIdLease{" + "dataCenterId=" + dataCenterId + ", workerId=" + workerId + ", owner='" + owner
+            + '\'' + ", expireAt=" + expireAt + '}';
+    }
+}
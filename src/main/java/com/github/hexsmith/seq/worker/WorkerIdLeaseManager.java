@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.worker;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+/**
+ * workerId租约管理器接口，从DB/Redis中抢占一个空闲的(dataCenterId, workerId)，并在后台定期续约
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-22 10:10
+ */
+public interface WorkerIdLeaseManager {
+
+    /**
+     * 申请一个空闲的workerId
+     *
+     * @return 租约
+     * @throws SequenceException 没有空闲的workerId或存储访问异常
+     */
+    WorkerIdLease acquire() throws SequenceException;
+
+    /**
+     * 释放租约，释放后该workerId可以被其它节点申请
+     *
+     * @param lease 租约
+     */
+    void release(WorkerIdLease lease);
+
+    /**
+     * 初始化
+     */
+    void init();
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.worker.impl.db;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.worker.AbstractWorkerIdLeaseManager;
+import com.github.hexsmith.seq.worker.WorkerIdLease;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+import javax.sql.DataSource;
+
+/**
+ * 基于DB的workerId租约管理器，每个(dataCenterId, workerId)一行，到期时间由各节点按本地时钟写入。
+ * 释放时把到期时间写为释放时刻，抢占时要求到期时间早于 now - maxClockSkewMillis，
+ * 过期和释放的workerId都要再经过maxClockSkewMillis才能被其它节点抢占
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-22 11:00
+ */
+public class DbWorkerIdLeaseManager extends AbstractWorkerIdLeaseManager {
+
+    /**
+     * 表名前缀，与区间表保持一致
+     */
+    private final static String TABLE_NAME_PREFIX = "sequence_";
+
+    /**
+     * 建表SQL
+     */
+    private static final String SQL_CREATE_TABLE =
+        "CREATE TABLE IF NOT EXISTS #tableName(" + "id bigint(20) NOT NULL AUTO_INCREMENT,"
+            + "data_center_id bigint(20) NOT NULL," + "worker_id bigint(20) NOT NULL,"
+            + "owner varchar(128) NOT NULL," + "expire_at bigint(20) NOT NULL," + "gmt_create DATETIME NOT NULL,"
+            + "gmt_modified DATETIME NOT NULL," + "PRIMARY KEY (`id`),UNIQUE uk_worker (`data_center_id`,`worker_id`)"
+            + ")";
+    /**
+     * 抢占从未使用过的workerId
+     */
+    private static final String SQL_INSERT_WORKER =
+        "INSERT IGNORE INTO #tableName(data_center_id,worker_id,owner,expire_at,gmt_create,gmt_modified)"
+            + " VALUES(?,?,?,?,?,?)";
+    /**
+     * 抢占租约已经过期的workerId
+     */
+    private static final String SQL_TAKE_OVER_WORKER =
+        "UPDATE #tableName SET owner=?,expire_at=?,gmt_modified=? WHERE data_center_id=? AND worker_id=? AND "
+            + "expire_at<?";
+    /**
+     * 续约
+     */
+    private static final String SQL_RENEW_WORKER =
+        "UPDATE #tableName SET expire_at=?,gmt_modified=? WHERE data_center_id=? AND worker_id=? AND owner=?";
+    /**
+     * 释放
+     */
+    private static final String SQL_RELEASE_WORKER =
+        "UPDATE #tableName SET expire_at=?,gmt_modified=? WHERE data_center_id=? AND worker_id=? AND owner=?";
+
+    /**
+     * DB来源
+     */
+    private DataSource dataSource;
+
+    /**
+     * 表名，默认worker
+     */
+    private String tableName = "worker";
+
+    /**
+     * 初始化
+     */
+    @Override
+    public void init() {
+        checkParam();
+        Connection connection = null;
+        Statement statement = null;
+        try {
+            connection = dataSource.getConnection();
+            statement = connection.createStatement();
+            statement.executeUpdate(SQL_CREATE_TABLE.replace("#tableName", getRealTableName()));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            close(statement);
+            close(connection);
+        }
+    }
+
+    @Override
+    protected boolean tryAcquire(long dataCenterId, long workerId, String owner, long expireAt) {
+        long now = System.currentTimeMillis();
+        Timestamp timestamp = new Timestamp(now);
+        if (executeUpdate(SQL_INSERT_WORKER, dataCenterId, workerId, owner, expireAt, timestamp, timestamp) > 0) {
+            return true;
+        }
+        return executeUpdate(SQL_TAKE_OVER_WORKER, owner, expireAt, timestamp, dataCenterId, workerId,
+            now - getMaxClockSkewMillis()) > 0;
+    }
+
+    @Override
+    protected boolean renew(WorkerIdLease lease, long expireAt) {
+        return executeUpdate(SQL_RENEW_WORKER, expireAt, new Timestamp(System.currentTimeMillis()),
+            lease.getDataCenterId(), lease.getWorkerId(), lease.getOwner()) > 0;
+    }
+
+    @Override
+    protected void doRelease(WorkerIdLease lease) {
+        long now = System.currentTimeMillis();
+        executeUpdate(SQL_RELEASE_WORKER, now, new Timestamp(now), lease.getDataCenterId(), lease.getWorkerId(),
+            lease.getOwner());
+    }
+
+    private int executeUpdate(String sql, Object... params) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        try {
+            connection = dataSource.getConnection();
+            statement = connection.prepareStatement(sql.replace("#tableName", getRealTableName()));
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SequenceException(e);
+        } finally {
+            close(statement);
+            close(connection);
+        }
+    }
+
+    private static void close(AutoCloseable closeable) {
+        if (null != closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private String getRealTableName() {
+        return TABLE_NAME_PREFIX + tableName;
+    }
+
+    @Override
+    protected void checkParam() {
+        super.checkParam();
+        if (null == dataSource) {
+            throw new SecurityException("[DbWorkerIdLeaseManager-checkParam] dataSource is null.");
+        }
+        if (null == tableName || tableName.trim().length() == 0) {
+            throw new SecurityException("[DbWorkerIdLeaseManager-checkParam] tableName is empty.");
+        }
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.worker.impl.redis;
+
+import com.github.hexsmith.seq.worker.AbstractWorkerIdLeaseManager;
+import com.github.hexsmith.seq.worker.WorkerIdLease;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * 基于Redis的workerId租约管理器，每个(dataCenterId, workerId)一个带过期时间的key，过期由Redis服务端判断。
+ * key的过期时间为 leaseMillis + maxClockSkewMillis，释放时key改为只保留maxClockSkewMillis的墓碑，
+ * 过期和释放的workerId都要再经过maxClockSkewMillis才能被其它节点抢占
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-06-22 14:00
+ */
+public class RedisWorkerIdLeaseManager extends AbstractWorkerIdLeaseManager {
+
+    /**
+     * 前缀防止key重复
+     */
+    private static final String KEY_PREFIX = "sequence_worker_";
+
+    /**
+     * 持有者没有变化时才续约
+     */
+    private static final String SCRIPT_RENEW =
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end";
+
+    /**
+     * 持有者没有变化时才删除
+     */
+    private static final String SCRIPT_RELEASE =
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    /**
+     * 持有者没有变化时把key替换为墓碑，墓碑过期前workerId不能被抢占
+     */
+    private static final String SCRIPT_RELEASE_TOMBSTONE = "if redis.call('get', KEYS[1]) == ARGV[1] then "
+        + "return redis.call('set', KEYS[1], ARGV[2], 'PX', ARGV[3]) else return 0 end";
+
+    /**
+     * 墓碑的值，与任何持有者标识都不相同
+     */
+    private static final String TOMBSTONE = "released";
+
+    /**
+     * redis连接池，可以与RedisSequenceRange共用
+     */
+    private JedisPool jedisPool;
+
+    /**
+     * 连接池是否由本对象创建
+     */
+    private boolean ownPool;
+
+    /**
+     * IP
+     */
+    private String ip;
+
+    /**
+     * 端口
+     */
+    private Integer port;
+
+    /**
+     * 验证权限
+     */
+    private String auth;
+
+    /**
+     * 初始化
+     */
+    @Override
+    public void init() {
+        if (null != jedisPool) {
+            return;
+        }
+        checkParam();
+        jedisPool = new JedisPool(new JedisPoolConfig(), ip, port, 2000, auth);
+        ownPool = true;
+    }
+
+    @Override
+    protected boolean tryAcquire(long dataCenterId, long workerId, String owner, long expireAt) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return "OK".equals(jedis.set(getRealKey(dataCenterId, workerId), owner, "NX", "PX", getKeyMillis()));
+        }
+    }
+
+    @Override
+    protected boolean renew(WorkerIdLease lease, long expireAt) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object result = jedis.eval(SCRIPT_RENEW, Collections.singletonList(getRealKey(lease)),
+                Arrays.asList(lease.getOwner(), String.valueOf(getKeyMillis())));
+            return Long.valueOf(1L).equals(result);
+        }
+    }
+
+    @Override
+    protected void doRelease(WorkerIdLease lease) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            if (getMaxClockSkewMillis() == 0) {
+                jedis.eval(SCRIPT_RELEASE, Collections.singletonList(getRealKey(lease)),
+                    Collections.singletonList(lease.getOwner()));
+            } else {
+                jedis.eval(SCRIPT_RELEASE_TOMBSTONE, Collections.singletonList(getRealKey(lease)),
+                    Arrays.asList(lease.getOwner(), TOMBSTONE, String.valueOf(getMaxClockSkewMillis())));
+            }
+        }
+    }
+
+    /**
+     * key的过期时间，本地租约到期后key还要保留maxClockSkewMillis
+     *
+     * @return 过期时间(毫秒)
+     */
+    private long getKeyMillis() {
+        return getLeaseMillis() + getMaxClockSkewMillis();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (ownPool && null != jedisPool) {
+            jedisPool.close();
+        }
+    }
+
+    private String getRealKey(WorkerIdLease lease) {
+        return getRealKey(lease.getDataCenterId(), lease.getWorkerId());
+    }
+
+    private String getRealKey(long dataCenterId, long workerId) {
+        return KEY_PREFIX + dataCenterId + "_" + workerId;
+    }
+
+    @Override
+    protected void checkParam() {
+        super.checkParam();
+        if (null == ip || ip.length() == 0) {
+            throw new SecurityException("[RedisWorkerIdLeaseManager-checkParam] ip is empty.");
+        }
+        if (null == port) {
+            throw new SecurityException("[RedisWorkerIdLeaseManager-checkParam] port is null.");
+        }
+    }
+
+    public JedisPool getJedisPool() {
+        return jedisPool;
+    }
+
+    public void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    public String getIp() {
+        return ip;
+    }
+
+    public void setIp(String ip) {
+        this.ip = ip;
+    }
+
+    public Integer getPort() {
+        return port;
+    }
+
+    public void setPort(Integer port) {
+        this.port = port;
+    }
+
+    public String getAuth() {
+        return auth;
+    }
+
+    public void setAuth(String auth) {
+        this.auth = auth;
+    }
+}
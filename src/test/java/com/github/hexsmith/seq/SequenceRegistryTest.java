@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * SequenceRegistry的日志文件名：任意业务名称都落在日志目录内，不同业务名称不共用文件
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 15:40
+ */
+public class SequenceRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void plainNamesKeepTheirFileName() {
+        assertEquals("order.journal", SequenceRegistry.journalFileName("order"));
+        assertEquals("user_id-v2.journal", SequenceRegistry.journalFileName("user_id-v2"));
+    }
+
+    @Test
+    public void unsafeNamesAreEncodedInsideTheDirectory() throws Exception {
+        File directory = folder.newFolder("journal");
+        List<String> names = Arrays.asList("../escape", "a/b", "a\\b", "..", ".hidden", "CON", "lpt1.txt", "订单",
+            "a:b", "a b", "~2e2e");
+        Set<String> fileNames = new HashSet<>();
+        for (String name : names) {
+            String fileName = SequenceRegistry.journalFileName(name);
+            assertTrue(name + " -> " + fileName, fileNames.add(fileName));
+            File file = new File(directory, fileName);
+            assertEquals(directory.getCanonicalFile(), file.getCanonicalFile().getParentFile());
+        }
+        // 编码后的名称不会与直接使用的名称冲突
+        assertFalse(fileNames.contains(SequenceRegistry.journalFileName("2e2e")));
+    }
+
+    @Test
+    public void tooLongNameIsRejected() {
+        char[] chars = new char[200];
+        Arrays.fill(chars, '/');
+        try {
+            SequenceRegistry.journalFileName(new String(chars));
+            fail("name encoded beyond the file name limit should be rejected");
+        } catch (SequenceException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void journalOfEscapingNameStaysInDirectoryAndResumes() throws Exception {
+        File root = folder.newFolder("root");
+        File directory = new File(root, "journal");
+        AtomicLong counter = new AtomicLong();
+        SequenceRangeManager manager = new SequenceRangeManager() {
+            @Override
+            public SequenceRange nextRange(String name) throws SequenceException {
+                long max = counter.addAndGet(100);
+                return new SequenceRange(max - 99, max);
+            }
+
+            @Override
+            public void init() {
+            }
+        };
+
+        SequenceRegistry registry = new SequenceRegistry(manager);
+        registry.setJournalDirectory(directory);
+        assertEquals(1, registry.nextValue("../escape"));
+        registry.close();
+
+        String[] files = root.list();
+        assertEquals(1, files.length);
+        assertEquals("journal", files[0]);
+        assertEquals(1, directory.list().length);
+
+        SequenceRegistry restarted = new SequenceRegistry(manager);
+        restarted.setJournalDirectory(directory);
+        assertEquals(2, restarted.nextValue("../escape"));
+        restarted.close();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq;
+
+import com.github.hexsmith.seq.sequence.impl.ClockBackwardsPolicy;
+import com.github.hexsmith.seq.sequence.impl.SnowflakeSequence;
+import com.github.hexsmith.seq.worker.AbstractWorkerIdLeaseManager;
+import com.github.hexsmith.seq.worker.WorkerIdLease;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * SnowflakeSequenceBuilder在SPARE_WORKER策略下对租约管理器的校验
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 15:00
+ */
+public class SnowflakeSequenceBuilderTest {
+
+    @Test
+    public void spareWorkerRejectsManagerCoveringUpperHalf() {
+        InMemoryLeaseManager manager = new InMemoryLeaseManager();
+        manager.init();
+        try {
+            SnowflakeSequenceBuilder.create().workerIdLeaseManager(manager)
+                .clockBackwardsPolicy(ClockBackwardsPolicy.SPARE_WORKER).build();
+            fail("lease manager with maxWorkerId 31 should be rejected");
+        } catch (IllegalArgumentException e) {
+            // 共用的租约管理器不能被修改，也不能申请租约
+            assertEquals(31, manager.getMaxWorkerId());
+            assertTrue(manager.owners.isEmpty());
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    public void spareWorkerAcceptsManagerLimitedToLowerHalf() {
+        InMemoryLeaseManager manager = new InMemoryLeaseManager();
+        manager.setMaxWorkerId(15);
+        manager.init();
+        try {
+            SnowflakeSequence sequence = (SnowflakeSequence) SnowflakeSequenceBuilder.create()
+                .workerIdLeaseManager(manager).clockBackwardsPolicy(ClockBackwardsPolicy.SPARE_WORKER).build();
+            long workerId = sequence.getWorkerIdLease().getWorkerId();
+            assertTrue(workerId <= 15);
+            assertEquals(workerId, sequence.getLayout().decode(sequence.nextValue()).getWorkerId());
+        } finally {
+            manager.close();
+        }
+    }
+
+    /**
+     * 内存中的租约管理器
+     */
+    private static class InMemoryLeaseManager extends AbstractWorkerIdLeaseManager {
+
+        private final Map<Long, String> owners = new ConcurrentHashMap<>();
+
+        @Override
+        public void init() {
+            checkParam();
+        }
+
+        @Override
+        protected boolean tryAcquire(long dataCenterId, long workerId, String owner, long expireAt) {
+            return null == owners.putIfAbsent(workerId, owner);
+        }
+
+        @Override
+        protected boolean renew(WorkerIdLease lease, long expireAt) {
+            return lease.getOwner().equals(owners.get(lease.getWorkerId()));
+        }
+
+        @Override
+        protected void doRelease(WorkerIdLease lease) {
+            owners.remove(lease.getWorkerId(), lease.getOwner());
+        }
+    }
+}
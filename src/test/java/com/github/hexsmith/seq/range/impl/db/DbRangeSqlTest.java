@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 各方言生成的SQL：表名替换完整，参数个数与绑定方式一致。MySQL、PostgreSQL、Oracle的SQL无法在H2上执行，只校验生成结果
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 16:30
+ */
+public class DbRangeSqlTest {
+
+    @Test
+    public void everyDialectReplacesTableNameAndBindsConsistently() {
+        for (DbDialect dialect : DbDialect.values()) {
+            DbRangeSql sql = new DbRangeSql("sequence_order", dialect);
+            String[] statements = {sql.getCreateTable(), sql.getInsertRange(), sql.getUpdateRange(), sql.getSelectRange(),
+                sql.getSelectRangeForUpdate(), sql.getUpdateLockedRange(), sql.getAtomicUpdate()};
+            for (String statement : statements) {
+                assertFalse(dialect + ": " + statement, statement.contains("#tableName"));
+            }
+            // 新增：区间名、初始值，部分方言需要再绑定一次区间名
+            assertEquals(dialect.name(), sql.isInsertBindsNameTwice() ? 3 : 2, countParameters(sql.getInsertRange()));
+            assertEquals(dialect.name(), 3, countParameters(sql.getUpdateRange()));
+            assertEquals(dialect.name(), 1, countParameters(sql.getSelectRange()));
+            assertEquals(dialect.name(), 2, countParameters(sql.getUpdateLockedRange()));
+            // 原子更新：步长、区间名、允许的最大旧值，输出参数方式多一个输出参数
+            int outParameters = sql.getUpdatedValue() == DbDialect.UpdatedValue.OUT_PARAMETER ? 1 : 0;
+            assertEquals(dialect.name(), 3 + outParameters, countParameters(sql.getAtomicUpdate()));
+            if (sql.getUpdatedValue() == DbDialect.UpdatedValue.SELECT_AFTER_UPDATE) {
+                assertNotNull(dialect.name(), sql.getSelectUpdated());
+            } else {
+                assertNull(dialect.name(), sql.getSelectUpdated());
+            }
+        }
+    }
+
+    @Test
+    public void dialectSpecificForms() {
+        assertEquals(DbDialect.UpdatedValue.SELECT_AFTER_UPDATE, DbDialect.MYSQL.getUpdatedValue());
+        assertEquals(DbDialect.UpdatedValue.RESULT_SET, DbDialect.POSTGRESQL.getUpdatedValue());
+        assertEquals(DbDialect.UpdatedValue.SELECT_AFTER_UPDATE, DbDialect.H2.getUpdatedValue());
+        assertEquals(DbDialect.UpdatedValue.OUT_PARAMETER, DbDialect.ORACLE.getUpdatedValue());
+        assertFalse(new DbRangeSql("t", DbDialect.MYSQL).isInsertBindsNameTwice());
+        assertEquals(true, new DbRangeSql("t", DbDialect.H2).isInsertBindsNameTwice());
+        assertEquals(true, new DbRangeSql("t", DbDialect.ORACLE).getCreateTable().contains("-955"));
+    }
+
+    @Test
+    public void selectRangesBuildsInList() {
+        DbRangeSql sql = new DbRangeSql("sequence_order", DbDialect.H2);
+        assertEquals("SELECT name,value FROM sequence_order WHERE name IN (?)", sql.getSelectRanges(1, false));
+        assertEquals("SELECT name,value FROM sequence_order WHERE name IN (?,?,?) FOR UPDATE", sql.getSelectRanges(3, true));
+    }
+
+    private static int countParameters(String statementSql) {
+        int count = 0;
+        for (int i = 0; i < statementSql.length(); i++) {
+            if (statementSql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
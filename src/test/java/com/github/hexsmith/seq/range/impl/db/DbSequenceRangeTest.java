@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.db;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 基于嵌入式H2(DbDialect.H2)的DbSequenceRange：每种分配方式分别在共用连接池和专用连接下运行
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 16:20
+ */
+@RunWith(Parameterized.class)
+public class DbSequenceRangeTest {
+
+    private static final int STEP = 10;
+
+    private static final String TABLE = "sequence_range";
+
+    private static final List<String> NAMES = Arrays.asList("a", "b", "existing", "fresh1", "fresh2", "hot");
+
+    @Parameterized.Parameter
+    public DbAllocationMode allocationMode;
+
+    @Parameterized.Parameter(1)
+    public boolean dedicated;
+
+    private JdbcConnectionPool dataSource;
+
+    private DbSequenceRange rangeManager;
+
+    @Parameterized.Parameters(name = "{0}, dedicated = {1}")
+    public static Collection<Object[]> parameters() {
+        List<Object[]> parameters = new ArrayList<>();
+        for (DbAllocationMode mode : DbAllocationMode.values()) {
+            parameters.add(new Object[] {mode, false});
+            parameters.add(new Object[] {mode, true});
+        }
+        return parameters;
+    }
+
+    @Before
+    public void setUp() {
+        dataSource = JdbcConnectionPool.create(
+            "jdbc:h2:mem:range_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        dataSource.setMaxConnections(32);
+        rangeManager = newRangeManager(0);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        rangeManager.close();
+        execute("SHUTDOWN");
+        dataSource.dispose();
+    }
+
+    @Test
+    public void newNameStartsAfterStepStartAndAdvancesByStep() {
+        assertRange(1, 10, rangeManager.nextRange("a"));
+        assertRange(11, 20, rangeManager.nextRange("a"));
+        assertRange(1, 10, rangeManager.nextRange("b"));
+
+        DbSequenceRange offset = newRangeManager(1000);
+        try {
+            assertRange(1001, 1010, offset.nextRange("fresh1"));
+            // 已存在的行不受stepStart影响
+            assertRange(21, 30, offset.nextRange("a"));
+        } finally {
+            offset.close();
+        }
+    }
+
+    @Test
+    public void concurrentCallersGetDisjointContiguousRanges() throws Exception {
+        int threads = 8;
+        int perThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<SequenceRange>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    List<SequenceRange> ranges = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        ranges.add(rangeManager.nextRange("hot"));
+                    }
+                    return ranges;
+                }));
+            }
+            HashSet<Long> mins = new HashSet<>();
+            for (Future<List<SequenceRange>> future : futures) {
+                for (SequenceRange range : future.get()) {
+                    assertEquals(STEP - 1, range.getMax() - range.getMin());
+                    assertEquals(1, range.getMin() % STEP);
+                    assertTrue("duplicate range " + range, mins.add(range.getMin()));
+                }
+            }
+            // 没有重复且个数相同，区间正好覆盖1..threads*perThread*STEP
+            assertEquals(threads * perThread, mins.size());
+            assertEquals((long) (threads * perThread - 1) * STEP + 1, (long) mins.stream().max(Long::compare).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void nextRangesCoversNewAndExistingRows() {
+        assertRange(1, 10, rangeManager.nextRange("existing"));
+
+        Map<String, SequenceRange> ranges = rangeManager.nextRanges(Arrays.asList("existing", "fresh1", "fresh2"));
+        assertEquals(Arrays.asList("existing", "fresh1", "fresh2"), new ArrayList<>(ranges.keySet()));
+        assertRange(11, 20, ranges.get("existing"));
+        assertRange(1, 10, ranges.get("fresh1"));
+        assertRange(1, 10, ranges.get("fresh2"));
+
+        ranges = rangeManager.nextRanges(Arrays.asList("fresh2", "existing"));
+        assertRange(11, 20, ranges.get("fresh2"));
+        assertRange(21, 30, ranges.get("existing"));
+        // 批量分配之后单个分配接着递增
+        assertRange(21, 30, rangeManager.nextRange("fresh2"));
+    }
+
+    @Test
+    public void overflowIsRejected() throws SQLException {
+        rangeManager.nextRange("a");
+        execute("UPDATE " + TABLE + " SET value=" + (Long.MAX_VALUE - STEP + 1) + " WHERE name='a'");
+        try {
+            rangeManager.nextRange("a");
+            fail("overflow should be rejected");
+        } catch (SequenceException e) {
+            // expected
+        }
+    }
+
+    private DbSequenceRange newRangeManager(long stepStart) {
+        DbSequenceRange manager = new DbSequenceRange();
+        manager.setDataSource(dataSource);
+        manager.setRangeStep(STEP);
+        manager.setStepStart(stepStart);
+        manager.setAllocationMode(allocationMode);
+        manager.setDialect(DbDialect.H2);
+        if (dedicated) {
+            manager.setDedicatedNames(new HashSet<>(NAMES));
+        }
+        manager.init();
+        return manager;
+    }
+
+    private void execute(String statementSql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(statementSql);
+        }
+    }
+
+    private static void assertRange(long min, long max, SequenceRange range) {
+        assertEquals(min, range.getMin());
+        assertEquals(max, range.getMax());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.failover;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * FailoverSequenceRange的熔断器：半开探测抛出Error时重新打开，之后仍能探测并恢复
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 16:00
+ */
+public class FailoverSequenceRangeTest {
+
+    private static final long OPEN_MILLIS = 50;
+
+    @Test
+    public void errorInHalfOpenTrialReopensBreaker() throws InterruptedException {
+        FlakyRangeManager primary = new FlakyRangeManager();
+        FlakyRangeManager secondary = new FlakyRangeManager();
+        FailoverSequenceRange failover = new FailoverSequenceRange();
+        failover.setBackends(Arrays.asList(primary, secondary));
+        failover.setFailureThreshold(1);
+        failover.setOpenMillis(OPEN_MILLIS);
+        failover.init();
+
+        primary.failure = new SequenceException("primary down");
+        failover.nextRange("a");
+        assertTrue(failover.isOpen(0));
+        assertEquals(1, failover.getSuccessCount(1));
+
+        Thread.sleep(OPEN_MILLIS * 2);
+        primary.failure = new BackendError();
+        try {
+            failover.nextRange("a");
+            fail("error of the trial call should propagate");
+        } catch (BackendError e) {
+            // expected
+        }
+        assertTrue(failover.isOpen(0));
+        assertEquals(2, failover.getFailureCount(0));
+
+        Thread.sleep(OPEN_MILLIS * 2);
+        primary.failure = null;
+        failover.nextRange("a");
+        assertFalse(failover.isOpen(0));
+        assertEquals(1, failover.getSuccessCount(0));
+    }
+
+    @Test
+    public void errorInBatchTrialReopensBreaker() throws InterruptedException {
+        FlakyRangeManager primary = new FlakyRangeManager();
+        FailoverSequenceRange failover = new FailoverSequenceRange();
+        failover.setBackends(Arrays.asList(primary, new FlakyRangeManager()));
+        failover.setFailureThreshold(1);
+        failover.setOpenMillis(OPEN_MILLIS);
+        failover.init();
+
+        primary.failure = new BackendError();
+        try {
+            failover.nextRanges(Arrays.asList("a", "b"));
+            fail("error should propagate");
+        } catch (BackendError e) {
+            // expected
+        }
+        assertTrue(failover.isOpen(0));
+
+        Thread.sleep(OPEN_MILLIS * 2);
+        primary.failure = null;
+        assertEquals(2, failover.nextRanges(Arrays.asList("a", "b")).size());
+        assertFalse(failover.isOpen(0));
+    }
+
+    private static class BackendError extends Error {
+    }
+
+    /**
+     * 可以设置异常的区间管理器
+     */
+    private static class FlakyRangeManager implements SequenceRangeManager {
+
+        private final AtomicLong counter = new AtomicLong();
+
+        private volatile Throwable failure;
+
+        @Override
+        public SequenceRange nextRange(String name) throws SequenceException {
+            Throwable error = failure;
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            long max = counter.addAndGet(100);
+            return new SequenceRange(max - 99, max);
+        }
+
+        @Override
+        public void init() {
+        }
+    }
+}
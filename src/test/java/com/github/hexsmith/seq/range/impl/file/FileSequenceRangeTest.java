@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.range.impl.file;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * FileSequenceRange关闭与分配区间并发：关闭后的调用抛出SequenceException，已经返回的区间都已写入文件
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 15:20
+ */
+public class FileSequenceRangeTest {
+
+    private static final int STEP = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void nextRangeAfterCloseFailsWithSequenceException() throws Exception {
+        FileSequenceRange range = open(new File(folder.getRoot(), "closed.seq"));
+        assertEquals(1, range.nextRange("a").getMin());
+        range.close();
+        try {
+            range.nextRange("a");
+            fail("nextRange after close should fail");
+        } catch (SequenceException e) {
+            // expected
+        }
+        try {
+            range.nextRange("b");
+            fail("nextRange of a new name after close should fail");
+        } catch (SequenceException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void closeRacingWithNextRangeNeverThrowsNullPointer() throws Exception {
+        File file = new File(folder.getRoot(), "race.seq");
+        FileSequenceRange range = open(file);
+        int threads = 8;
+        AtomicLong maxIssued = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch started = new CountDownLatch(threads);
+            List<Future<Throwable>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String name = "name" + (t % 3);
+                futures.add(executor.submit(() -> {
+                    started.countDown();
+                    for (; ; ) {
+                        try {
+                            SequenceRange next = range.nextRange(name);
+                            if ("name0".equals(name)) {
+                                maxIssued.accumulateAndGet(next.getMax(), Math::max);
+                            }
+                        } catch (Throwable e) {
+                            return e;
+                        }
+                    }
+                }));
+            }
+            started.await();
+            Thread.sleep(50);
+            range.close();
+            for (Future<Throwable> future : futures) {
+                Throwable error = future.get();
+                assertTrue("unexpected " + error, error instanceof SequenceException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 关闭前返回的区间都已经写入文件，重新打开后不会再分配
+        FileSequenceRange reopened = open(file);
+        try {
+            assertTrue(reopened.nextRange("name0").getMin() > maxIssued.get());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static FileSequenceRange open(File file) {
+        FileSequenceRange range = new FileSequenceRange();
+        range.setPath(file.getPath());
+        range.setStep(STEP);
+        range.setDurability(FileDurability.PERIODIC);
+        range.init();
+        return range;
+    }
+}
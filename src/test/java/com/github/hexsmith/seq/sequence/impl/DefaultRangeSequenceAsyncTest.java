@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * DefaultRangeSequence.nextValueAsync的等待队列：切换失败时等待者以异常完成，之后的调用重新发起切换
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 10:30
+ */
+public class DefaultRangeSequenceAsyncTest {
+
+    private static final int STEP = 100;
+
+    @Test
+    public void failedRefillFailsWaitersAndNextCallRecovers() throws Exception {
+        StubSequenceRangeManager manager = new StubSequenceRangeManager(STEP);
+        List<Runnable> tasks = new ArrayList<>();
+        DefaultRangeSequence sequence = newSequence(manager);
+        // 手动执行区间获取，保证等待者都在切换完成之前进入队列
+        sequence.setPrefetchExecutor(tasks::add);
+
+        SequenceException failure = new SequenceException("range manager down");
+        manager.setFailure(failure);
+        List<CompletableFuture<Long>> waiters = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiters.add(sequence.nextValueAsync());
+        }
+        assertEquals(1, tasks.size());
+        for (CompletableFuture<Long> waiter : waiters) {
+            assertFalse(waiter.isDone());
+        }
+
+        runAll(tasks);
+        for (CompletableFuture<Long> waiter : waiters) {
+            try {
+                waiter.get(1, TimeUnit.SECONDS);
+                fail("waiter should fail with the refill");
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+            }
+        }
+
+        manager.setFailure(null);
+        CompletableFuture<Long> first = sequence.nextValueAsync();
+        CompletableFuture<Long> second = sequence.nextValueAsync();
+        assertEquals(1, tasks.size());
+        runAll(tasks);
+        assertEquals(1L, first.get(1, TimeUnit.SECONDS).longValue());
+        assertEquals(2L, second.get(1, TimeUnit.SECONDS).longValue());
+        assertEquals(3L, sequence.nextValueAsync().getNow(-1L).longValue());
+        assertEquals(2, manager.getCalls());
+    }
+
+    @Test
+    public void waiterQueuedDuringSyncRefillIsCompletedByIt() throws Exception {
+        StubSequenceRangeManager manager = new StubSequenceRangeManager(STEP);
+        manager.setLatencyMillis(200);
+        DefaultRangeSequence sequence = newSequence(manager);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> sync = executor.submit(sequence::nextValue);
+            while (manager.getCalls() == 0) {
+                Thread.yield();
+            }
+            CompletableFuture<Long> async = sequence.nextValueAsync();
+            long[] values = {sync.get(5, TimeUnit.SECONDS), async.get(5, TimeUnit.SECONDS)};
+            Arrays.sort(values);
+            assertEquals(1, values[0]);
+            assertEquals(2, values[1]);
+            assertEquals(1, manager.getCalls());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void concurrentAsyncCallsNeverDuplicate() throws Exception {
+        StubSequenceRangeManager manager = new StubSequenceRangeManager(STEP);
+        DefaultRangeSequence sequence = newSequence(manager);
+        int threads = 8;
+        int perThread = 5000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<CompletableFuture<Long>>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    List<CompletableFuture<Long>> futures = new ArrayList<>(perThread);
+                    for (int j = 0; j < perThread; j++) {
+                        futures.add(sequence.nextValueAsync());
+                    }
+                    return futures;
+                }));
+            }
+            long[] values = new long[threads * perThread];
+            int off = 0;
+            for (Future<List<CompletableFuture<Long>>> result : results) {
+                for (CompletableFuture<Long> future : result.get()) {
+                    values[off++] = future.get(5, TimeUnit.SECONDS);
+                }
+            }
+            Arrays.sort(values);
+            for (int i = 0; i < values.length; i++) {
+                assertEquals(i + 1, values[i]);
+            }
+            assertEquals(values.length / STEP, manager.getCalls());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static DefaultRangeSequence newSequence(StubSequenceRangeManager manager) {
+        DefaultRangeSequence sequence = new DefaultRangeSequence();
+        sequence.setSeqRangeMgr(manager);
+        sequence.setRangeName("test");
+        return sequence;
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        List<Runnable> pending = new ArrayList<>(tasks);
+        tasks.clear();
+        for (Runnable task : pending) {
+            task.run();
+        }
+    }
+}
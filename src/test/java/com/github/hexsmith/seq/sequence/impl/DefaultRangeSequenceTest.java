@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DefaultRangeSequence多线程下通过CAS切换区间：序列号不重复，每个区间只被安装一次且用完才切换
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 10:20
+ */
+public class DefaultRangeSequenceTest {
+
+    private static final int THREADS = 16;
+
+    private static final int PER_THREAD = 20000;
+
+    private static final int STEP = 100;
+
+    @Test
+    public void concurrentRefillHandsOffEveryRangeExactlyOnce() throws Exception {
+        StubSequenceRangeManager manager = new StubSequenceRangeManager(STEP);
+        DefaultRangeSequence sequence = newSequence(manager);
+
+        long[] values = collect(() -> {
+            long[] result = new long[PER_THREAD];
+            for (int i = 0; i < PER_THREAD; i++) {
+                result[i] = sequence.nextValue();
+            }
+            return result;
+        });
+
+        int total = THREADS * PER_THREAD;
+        // 区间连续且每个区间用完才切换，发放的序列号正好是1..total
+        for (int i = 0; i < total; i++) {
+            assertEquals(i + 1, values[i]);
+        }
+        int ranges = (total + STEP - 1) / STEP;
+        assertEquals(ranges, manager.getCalls());
+        assertEquals(ranges, sequence.getRangeSwitchCount());
+    }
+
+    @Test
+    public void concurrentRefillWithSlowManagerParksWaiters() throws Exception {
+        StubSequenceRangeManager manager = new StubSequenceRangeManager(STEP);
+        manager.setLatencyMillis(1);
+        DefaultRangeSequence sequence = newSequence(manager);
+
+        int perThread = 2000;
+        long[] values = collect(() -> {
+            long[] result = new long[perThread];
+            for (int i = 0; i < perThread; i++) {
+                result[i] = sequence.nextValue();
+            }
+            return result;
+        });
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(i + 1, values[i]);
+        }
+        assertEquals(values.length / STEP, manager.getCalls());
+    }
+
+    @Test
+    public void concurrentFillAndSubBlocksNeverDuplicate() throws Exception {
+        StubSequenceRangeManager manager = new StubSequenceRangeManager(STEP);
+        DefaultRangeSequence sequence = newSequence(manager);
+        sequence.setSubBlockSize(7);
+
+        long[] values = collect(() -> {
+            long[] result = new long[PER_THREAD];
+            int filled = 0;
+            while (filled < PER_THREAD) {
+                if (filled % 3 == 0) {
+                    result[filled++] = sequence.nextValue();
+                } else {
+                    int len = Math.min(13, PER_THREAD - filled);
+                    sequence.fill(result, filled, len);
+                    filled += len;
+                }
+            }
+            return result;
+        });
+
+        for (int i = 1; i < values.length; i++) {
+            assertTrue("duplicate value " + values[i], values[i] > values[i - 1]);
+        }
+        assertTrue(values[0] >= 1);
+        assertTrue(values[values.length - 1] <= (long) manager.getCalls() * STEP);
+    }
+
+    private static DefaultRangeSequence newSequence(StubSequenceRangeManager manager) {
+        DefaultRangeSequence sequence = new DefaultRangeSequence();
+        sequence.setSeqRangeMgr(manager);
+        sequence.setRangeName("test");
+        return sequence;
+    }
+
+    /**
+     * 所有线程同时开始生成，返回排序后的全部序列号
+     */
+    private static long[] collect(Callable<long[]> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<long[]> results = new ArrayList<>();
+            int total = 0;
+            for (Future<long[]> future : futures) {
+                long[] result = future.get();
+                results.add(result);
+                total += result.length;
+            }
+            long[] values = new long[total];
+            int off = 0;
+            for (long[] result : results) {
+                System.arraycopy(result, 0, values, off, result.length);
+                off += result.length;
+            }
+            Arrays.sort(values);
+            return values;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+/**
+ * 测试用的雪花算法生成器，时间由测试代码设置，用于模拟时钟回退和毫秒内序列溢出
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 14:00
+ */
+class ManualClockSnowflakeSequence extends SnowflakeSequence {
+
+    /**
+     * 当前时间(毫秒)
+     */
+    private volatile long now;
+
+    ManualClockSnowflakeSequence(SnowflakeLayout layout, long now) {
+        super(layout);
+        this.now = now;
+    }
+
+    @Override
+    long timeGen() {
+        return now;
+    }
+
+    void setNow(long now) {
+        this.now = now;
+    }
+
+    /**
+     * 在另一个线程中延迟推进时间，用于解除等待下一个毫秒的调用
+     *
+     * @param now 推进后的时间(毫秒)
+     * @param delayMillis 延迟(毫秒)
+     * @return 推进时间的线程
+     */
+    Thread advanceLater(long now, long delayMillis) {
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            setNow(now);
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
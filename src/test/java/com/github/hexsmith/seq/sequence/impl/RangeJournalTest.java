@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.range.SequenceRange;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * RangeJournal恢复：正常关闭、进程崩溃(ACTIVE状态从高水位恢复)和无效记录。
+ * 崩溃用日志仍在使用时复制出的文件模拟，内存映射写入的内容对复制可见，与进程被杀后留在页缓存中的内容相同
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 10:00
+ */
+public class RangeJournalTest {
+
+    private static final long RESERVE = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recoverAfterCleanCloseResumesFromNext() throws IOException {
+        File file = new File(folder.getRoot(), "clean.journal");
+        RangeJournal journal = new RangeJournal(file, RESERVE, false);
+        assertNull(journal.recover());
+        journal.begin(new SequenceRange(1, 1000));
+        journal.reserve(41);
+        journal.close(42);
+
+        SequenceRange range = new RangeJournal(file, RESERVE, false).recover();
+        assertNotNull(range);
+        assertEquals(42, range.getMin());
+        assertEquals(1000, range.getMax());
+    }
+
+    @Test
+    public void recoverAfterCrashResumesFromHighWater() throws IOException {
+        File file = new File(folder.getRoot(), "active.journal");
+        RangeJournal journal = new RangeJournal(file, RESERVE, false);
+        journal.recover();
+        journal.begin(new SequenceRange(1, 1000));
+        journal.reserve(10);
+        File crashed = crash(file, "crashed.journal");
+        journal.close(11);
+
+        SequenceRange range = new RangeJournal(crashed, RESERVE, false).recover();
+        assertNotNull(range);
+        // 10之前的序列号可能已经发放，高水位为 10 + 1 + RESERVE
+        assertEquals(10 + 1 + RESERVE, range.getMin());
+        assertEquals(1000, range.getMax());
+    }
+
+    @Test
+    public void recoverAfterCrashNearMaxReservesWholeRange() throws IOException {
+        File file = new File(folder.getRoot(), "tail.journal");
+        RangeJournal journal = new RangeJournal(file, RESERVE, false);
+        journal.recover();
+        journal.begin(new SequenceRange(1, 1000));
+        journal.reserve(950);
+        File crashed = crash(file, "crashed.journal");
+        journal.close(-1);
+
+        assertNull(new RangeJournal(crashed, RESERVE, false).recover());
+    }
+
+    @Test
+    public void recoveredRangeIsInvalidatedUntilNextBegin() throws IOException {
+        File file = new File(folder.getRoot(), "active.journal");
+        RangeJournal journal = new RangeJournal(file, RESERVE, false);
+        journal.recover();
+        journal.begin(new SequenceRange(1, 1000));
+        journal.reserve(1);
+        File crashed = crash(file, "crashed.journal");
+        journal.close(2);
+
+        RangeJournal recovering = new RangeJournal(crashed, RESERVE, false);
+        assertNotNull(recovering.recover());
+        // 恢复后、记录新区间之前再次崩溃，不能把同一个区间恢复第二次
+        File crashedAgain = crash(crashed, "crashed-again.journal");
+        recovering.close(-1);
+
+        assertNull(new RangeJournal(crashedAgain, RESERVE, false).recover());
+    }
+
+    @Test
+    public void recoverReturnsNullForExhaustedOrMissingRecord() throws IOException {
+        File exhausted = new File(folder.getRoot(), "exhausted.journal");
+        RangeJournal journal = new RangeJournal(exhausted, RESERVE, false);
+        journal.recover();
+        journal.begin(new SequenceRange(1, 10));
+        journal.reserve(10);
+        journal.close(-1);
+        assertNull(new RangeJournal(exhausted, RESERVE, false).recover());
+
+        assertNull(new RangeJournal(new File(folder.getRoot(), "missing.journal"), RESERVE, false).recover());
+
+        File garbage = folder.newFile("garbage.journal");
+        Files.write(garbage.toPath(), new byte[64]);
+        assertNull(new RangeJournal(garbage, RESERVE, false).recover());
+    }
+
+    /**
+     * 复制日志当前的内容，相当于此刻进程被杀
+     */
+    private File crash(File file, String name) throws IOException {
+        File copy = new File(folder.getRoot(), name);
+        Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return copy;
+    }
+}
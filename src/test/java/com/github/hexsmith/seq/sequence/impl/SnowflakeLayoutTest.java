@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * SnowflakeLayout的位数校验和ID拆分
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 14:40
+ */
+public class SnowflakeLayoutTest {
+
+    private static final long EPOCH = SnowflakeLayout.DEFAULT.getEpoch();
+
+    @Test
+    public void defaultLayoutMatchesClassicSnowflake() {
+        SnowflakeLayout layout = SnowflakeLayout.DEFAULT;
+        assertEquals(31, layout.getMaxDataCenterId());
+        assertEquals(31, layout.getMaxWorkerId());
+        assertEquals(4095, layout.getSequenceMask());
+        assertEquals(12, layout.getWorkerIdShift());
+        assertEquals(17, layout.getDataCenterIdShift());
+        assertEquals(22, layout.getTimestampShift());
+    }
+
+    @Test
+    public void bitsMustSumTo63() {
+        assertRejected(41, 5, 5, 11, EPOCH, 1);
+        assertRejected(41, 5, 5, 13, EPOCH, 1);
+    }
+
+    @Test
+    public void timestampAndSequenceLeaveRoomForSpareFlag() {
+        // 时间和序列共63位时没有位置放备用workerId标记
+        assertRejected(41, 0, 0, 22, EPOCH, 1);
+        new SnowflakeLayout(41, 0, 1, 21, EPOCH, 1);
+    }
+
+    @Test
+    public void rejectsInvalidParts() {
+        assertRejected(0, 5, 5, 53, EPOCH, 1);
+        assertRejected(41, 5, 17, 0, EPOCH, 1);
+        assertRejected(41, -1, 11, 12, EPOCH, 1);
+        assertRejected(41, 5, 5, 12, -1, 1);
+        assertRejected(41, 5, 5, 12, System.currentTimeMillis() + 60000L, 1);
+        assertRejected(41, 5, 5, 12, EPOCH, 0);
+    }
+
+    @Test
+    public void decodeReversesGeneratedId() {
+        SnowflakeLayout layout = new SnowflakeLayout(39, 3, 9, 12, EPOCH, 10L);
+        SnowflakeSequence sequence = new SnowflakeSequence(layout);
+        sequence.setDataCenterId(5);
+        sequence.setWorkerId(300);
+        long before = System.currentTimeMillis();
+        long id = sequence.nextValue();
+        long after = System.currentTimeMillis();
+
+        SnowflakeId decoded = layout.decode(id);
+        assertEquals(id, decoded.getId());
+        assertEquals(5, decoded.getDataCenterId());
+        assertEquals(300, decoded.getWorkerId());
+        assertEquals(0, decoded.getSequence());
+        // 时间按10毫秒取整
+        long expectedMin = EPOCH + (before - EPOCH) / 10 * 10;
+        long expectedMax = EPOCH + (after - EPOCH) / 10 * 10;
+        if (decoded.getTimestamp() < expectedMin || decoded.getTimestamp() > expectedMax) {
+            fail("timestamp " + decoded.getTimestamp() + " not in [" + expectedMin + ", " + expectedMax + "]");
+        }
+    }
+
+    @Test
+    public void decodeRejectsNegativeId() {
+        try {
+            SnowflakeLayout.DEFAULT.decode(-1L);
+            fail("negative id should be rejected");
+        } catch (SequenceException e) {
+            // expected
+        }
+    }
+
+    private static void assertRejected(int timestampBits, int dataCenterIdBits, int workerIdBits, int sequenceBits,
+                                       long epoch, long timeUnitMillis) {
+        try {
+            new SnowflakeLayout(timestampBits, dataCenterIdBits, workerIdBits, sequenceBits, epoch, timeUnitMillis);
+            fail("layout should be rejected");
+        } catch (SequenceException e) {
+            // expected
+        }
+    }
+}
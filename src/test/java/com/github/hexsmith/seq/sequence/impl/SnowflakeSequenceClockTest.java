@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * SnowflakeSequence的时钟回退策略，时间由ManualClockSnowflakeSequence控制
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 14:10
+ */
+public class SnowflakeSequenceClockTest {
+
+    private static final SnowflakeLayout LAYOUT = SnowflakeLayout.DEFAULT;
+
+    private static final long T = LAYOUT.getEpoch() + 1000000L;
+
+    @Test
+    public void spareWorkerWithDefaultIdsSetsSpareBitAndNeverRepeats() {
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(LAYOUT, T + 500);
+        sequence.setClockBackwardsPolicy(ClockBackwardsPolicy.SPARE_WORKER);
+        Set<Long> ids = new HashSet<>();
+        generate(sequence, ids, 10);
+        sequence.setNow(T + 1000);
+        generate(sequence, ids, 10);
+
+        // 回退500毫秒，回到第一批ID的时间
+        sequence.setNow(T + 500);
+        long[] afterRollback = generate(sequence, ids, 10);
+
+        assertTrue(sequence.isUsingSpareWorker());
+        assertEquals(1, sequence.getClockBackwardsCount());
+        long spareWorkerId = (LAYOUT.getMaxWorkerId() + 1) >> 1;
+        for (long id : afterRollback) {
+            SnowflakeId decoded = LAYOUT.decode(id);
+            assertEquals(spareWorkerId, decoded.getWorkerId());
+            assertEquals(0, decoded.getDataCenterId());
+            assertEquals(T + 500, decoded.getTimestamp());
+        }
+        assertEquals(30, ids.size());
+    }
+
+    @Test
+    public void spareWorkerKeepsDataCenterAndLowWorkerBits() {
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(LAYOUT, T + 500);
+        sequence.setClockBackwardsPolicy(ClockBackwardsPolicy.SPARE_WORKER);
+        sequence.setDataCenterId(2);
+        sequence.setWorkerId(3);
+        long before = sequence.nextValue();
+        sequence.setNow(T + 100);
+        long after = sequence.nextValue();
+
+        assertEquals(3, LAYOUT.decode(before).getWorkerId());
+        SnowflakeId decoded = LAYOUT.decode(after);
+        assertEquals(2, decoded.getDataCenterId());
+        assertEquals(3 | ((LAYOUT.getMaxWorkerId() + 1) >> 1), decoded.getWorkerId());
+    }
+
+    @Test
+    public void spareWorkerFailsOnSecondRollback() {
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(LAYOUT, T + 1000);
+        sequence.setClockBackwardsPolicy(ClockBackwardsPolicy.SPARE_WORKER);
+        sequence.nextValue();
+        sequence.setNow(T + 500);
+        sequence.nextValue();
+        sequence.setNow(T + 100);
+        try {
+            sequence.nextValue();
+            fail("second rollback should fail");
+        } catch (SequenceException e) {
+            assertTrue(sequence.isUsingSpareWorker());
+        }
+    }
+
+    @Test
+    public void spareWorkerRejectsWorkerIdWithSpareBit() {
+        SnowflakeSequence sequence = new SnowflakeSequence(LAYOUT);
+        sequence.setClockBackwardsPolicy(ClockBackwardsPolicy.SPARE_WORKER);
+        try {
+            sequence.setWorkerId((LAYOUT.getMaxWorkerId() + 1) >> 1);
+            fail("workerId in the upper half should be rejected");
+        } catch (SequenceException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void failPolicyRejectsRollback() {
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(LAYOUT, T + 1000);
+        sequence.nextValue();
+        sequence.setNow(T + 999);
+        try {
+            sequence.nextValue();
+            fail("FAIL policy should reject any rollback");
+        } catch (SequenceException e) {
+            assertEquals(1, sequence.getClockBackwardsCount());
+        }
+    }
+
+    @Test
+    public void logicalClockBorrowsWithinTolerance() {
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(LAYOUT, T + 1000);
+        sequence.setClockBackwardsPolicy(ClockBackwardsPolicy.LOGICAL_CLOCK);
+        sequence.setMaxBackwardsMillis(5);
+        long before = sequence.nextValue();
+        sequence.setNow(T + 997);
+        long after = sequence.nextValue();
+
+        assertTrue(after > before);
+        assertEquals(T + 1000, LAYOUT.decode(after).getTimestamp());
+
+        sequence.setNow(T + 900);
+        try {
+            sequence.nextValue();
+            fail("rollback beyond maxBackwardsMillis should fail");
+        } catch (SequenceException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void logicalClockOverflowMovesToNextTickWithinTolerance() {
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(LAYOUT, T + 1000);
+        sequence.setClockBackwardsPolicy(ClockBackwardsPolicy.LOGICAL_CLOCK);
+        sequence.setMaxBackwardsMillis(5);
+        sequence.nextValue();
+        sequence.setNow(T + 998);
+        long[] ids = new long[(int) LAYOUT.getSequenceMask() + 2];
+        sequence.fill(ids, 0, ids.length);
+
+        SnowflakeId last = LAYOUT.decode(ids[ids.length - 1]);
+        assertEquals(T + 1001, last.getTimestamp());
+        for (int i = 1; i < ids.length; i++) {
+            assertTrue(ids[i] > ids[i - 1]);
+        }
+    }
+
+    @Test
+    public void waitPolicyWaitsForClockToCatchUp() throws InterruptedException {
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(LAYOUT, T + 1000);
+        sequence.setClockBackwardsPolicy(ClockBackwardsPolicy.WAIT);
+        sequence.setMaxBackwardsMillis(5);
+        long before = sequence.nextValue();
+        sequence.setNow(T + 997);
+        Thread advancer = sequence.advanceLater(T + 1001, 50);
+        long after = sequence.nextValue();
+        advancer.join();
+
+        assertTrue(after > before);
+        assertFalse(sequence.isUsingSpareWorker());
+        assertTrue(LAYOUT.decode(after).getTimestamp() >= T + 1000);
+    }
+
+    private static long[] generate(SnowflakeSequence sequence, Set<Long> ids, int count) {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = sequence.nextValue();
+            assertTrue("duplicate id " + values[i], ids.add(values[i]));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SnowflakeSequence无锁生成：多线程下不重复，同一线程内递增，毫秒内序列溢出后进入下一个毫秒
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 14:30
+ */
+public class SnowflakeSequenceTest {
+
+    private static final int THREADS = 8;
+
+    private static final int PER_THREAD = 50000;
+
+    @Test
+    public void concurrentNextValueAndFillNeverRepeatAndIncreasePerThread() throws Exception {
+        SnowflakeSequence sequence = new SnowflakeSequence();
+        sequence.setDataCenterId(3);
+        sequence.setWorkerId(7);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                boolean batch = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long[] result = new long[PER_THREAD];
+                    int filled = 0;
+                    while (filled < PER_THREAD) {
+                        if (batch) {
+                            int len = Math.min(97, PER_THREAD - filled);
+                            sequence.fill(result, filled, len);
+                            filled += len;
+                        } else {
+                            result[filled++] = sequence.nextValue();
+                        }
+                    }
+                    return result;
+                }));
+            }
+            start.countDown();
+
+            long[] all = new long[THREADS * PER_THREAD];
+            int off = 0;
+            for (Future<long[]> future : futures) {
+                long[] result = future.get();
+                for (int i = 1; i < result.length; i++) {
+                    assertTrue("not increasing within a thread", result[i] > result[i - 1]);
+                }
+                System.arraycopy(result, 0, all, off, result.length);
+                off += result.length;
+            }
+            Arrays.sort(all);
+            for (int i = 1; i < all.length; i++) {
+                assertTrue("duplicate id " + all[i], all[i] > all[i - 1]);
+            }
+            SnowflakeId decoded = sequence.getLayout().decode(all[0]);
+            assertEquals(3, decoded.getDataCenterId());
+            assertEquals(7, decoded.getWorkerId());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void sequenceOverflowWaitsForNextTick() throws InterruptedException {
+        SnowflakeLayout layout = SnowflakeLayout.DEFAULT;
+        long t = layout.getEpoch() + 1000000L;
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(layout, t);
+        int perTick = (int) layout.getSequenceMask() + 1;
+        long[] ids = new long[perTick];
+        sequence.fill(ids, 0, perTick);
+        assertEquals(layout.getSequenceMask(), layout.decode(ids[perTick - 1]).getSequence());
+        assertEquals(t, layout.decode(ids[perTick - 1]).getTimestamp());
+
+        Thread advancer = sequence.advanceLater(t + 1, 50);
+        long next = sequence.nextValue();
+        advancer.join();
+
+        SnowflakeId decoded = layout.decode(next);
+        assertEquals(t + 1, decoded.getTimestamp());
+        assertEquals(0, decoded.getSequence());
+        assertTrue(next > ids[perTick - 1]);
+    }
+
+    @Test
+    public void fillSpansTicksWithoutGapsOrRepeats() throws InterruptedException {
+        SnowflakeLayout layout = new SnowflakeLayout(41, 5, 7, 10, SnowflakeLayout.DEFAULT.getEpoch(), 1L);
+        long t = layout.getEpoch() + 1000000L;
+        ManualClockSnowflakeSequence sequence = new ManualClockSnowflakeSequence(layout, t);
+        int perTick = (int) layout.getSequenceMask() + 1;
+        long[] ids = new long[perTick + 10];
+
+        Thread advancer = sequence.advanceLater(t + 1, 50);
+        sequence.fill(ids, 0, ids.length);
+        advancer.join();
+
+        for (int i = 0; i < ids.length; i++) {
+            SnowflakeId decoded = layout.decode(ids[i]);
+            assertEquals(i < perTick ? t : t + 1, decoded.getTimestamp());
+            assertEquals(i % perTick, decoded.getSequence());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2016-2018 The hexsmith Authors.
+ *
+ *	Licensed under the Apache License, Version 2.0 (the "License");
+ *	you may not use this file except in compliance with the License.
+ *	You may obtain a copy of the License at
+ *
+ *		 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *	Unless required by applicable law or agreed to in writing, software
+ *	distributed under the License is distributed on an "AS IS" BASIS,
+ *	WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *	See the License for the specific language governing permissions and
+ *	limitations under the License.
+ */
+package com.github.hexsmith.seq.sequence.impl;
+
+import com.github.hexsmith.seq.exception.SequenceException;
+import com.github.hexsmith.seq.range.SequenceRange;
+import com.github.hexsmith.seq.range.SequenceRangeManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 测试用的区间管理器，按步长发放连续的区间，可以设置模拟延迟和让下一次获取失败
+ *
+ * @author yuzp
+ * @version V1.0
+ * @since 2018-07-13 10:10
+ */
+class StubSequenceRangeManager implements SequenceRangeManager {
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final int step;
+
+    /**
+     * 每次获取区间的模拟延迟(毫秒)
+     */
+    private volatile long latencyMillis;
+
+    /**
+     * 获取区间时抛出的异常，为空时正常返回
+     */
+    private volatile SequenceException failure;
+
+    StubSequenceRangeManager(int step) {
+        this.step = step;
+    }
+
+    @Override
+    public SequenceRange nextRange(String name) throws SequenceException {
+        calls.incrementAndGet();
+        if (latencyMillis > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        }
+        SequenceException error = failure;
+        if (null != error) {
+            throw error;
+        }
+        long max = counter.addAndGet(step);
+        return new SequenceRange(max - step + 1, max);
+    }
+
+    @Override
+    public void init() {
+    }
+
+    int getCalls() {
+        return calls.get();
+    }
+
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    void setFailure(SequenceException failure) {
+        this.failure = failure;
+    }
+}